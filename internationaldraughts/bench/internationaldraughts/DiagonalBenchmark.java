@@ -0,0 +1,133 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Position.COLUMN;
+import internationaldraughts.Position.Diagonal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DiagonalBenchmark
+ *
+ * King lines (Position.Diagonal.getLine): precomputed rays (table) against the former diagonal masks with
+ * Long.reverse arithmetic (arithmetic, kept here as reference).
+ * Random king tiles, directions and occupations (pieces on the board), both must give the same lines (setup).
+ *
+ * @author Naardeze
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiagonalBenchmark {
+    @Param({"6", "20", "40"})
+    public int pieces;
+
+    final private static int LINES = 1024;
+
+    final private static long[] MIN_PLUS = new long[GRID];
+    final private static long[] PLUS_MIN = new long[GRID - 1];
+
+    static {
+        for (int i = 0; i < MIN_PLUS.length; i++) {
+            for (int j = COLUMN - 1 - Math.min(i, COLUMN - 1) + i / COLUMN * COLUMN + Math.max(0, i - COLUMN) * GRID; Long.bitCount(MIN_PLUS[i]) < 1 + (Math.min(i, COLUMN - 1) - Math.max(0, i - COLUMN)) * 2; j += COLUMN + 1 - j / COLUMN % 2) {
+                MIN_PLUS[i] ^= 1l << j;
+            }
+        }
+
+        for (int i = 0; i < PLUS_MIN.length; i++) {
+            for (int j = Math.min(i, COLUMN - 1) + Math.max(0, i - (COLUMN - 1)) * GRID; Long.bitCount(PLUS_MIN[i]) < 2 + (Math.min(i, COLUMN - 1) - Math.max(0, i - (COLUMN - 1))) * 2; j += COLUMN - j / COLUMN % 2) {
+                PLUS_MIN[i] ^= 1l << j;
+            }
+        }
+    }
+
+    //former Diagonal.getLine
+    private static long getLine(Diagonal diagonal, int index, long occupied, long from) {
+        long line;
+
+        switch (diagonal) {
+            case MIN_X_MIN_Y:
+                line = MIN_PLUS[COLUMN - 1 - index % COLUMN + index / COLUMN % 2 + index / GRID];
+
+                return line & (occupied ^ Long.reverse(Long.reverse(line & occupied) - Long.reverse(from)));
+            case PLUS_X_MIN_Y:
+                line = PLUS_MIN[index % COLUMN + index / GRID];
+
+                return line & (occupied ^ Long.reverse(Long.reverse(line & occupied) - Long.reverse(from)));
+            case MIN_X_PLUS_Y:
+                line = PLUS_MIN[index % COLUMN + index / GRID];
+
+                return line & (occupied ^ ((line & occupied) - from));
+            default:
+                line = MIN_PLUS[COLUMN - 1 - index % COLUMN + index / COLUMN % 2 + index / GRID];
+
+                return line & (occupied ^ ((line & occupied) - from));
+        }
+    }
+
+    final private Diagonal[] diagonal = new Diagonal[LINES];
+    final private int[] index = new int[LINES];
+    final private long[] occupied = new long[LINES];
+    final private long[] from = new long[LINES];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(GRID);
+
+        for (int i = 0; i < LINES; i++) {
+            do {
+                diagonal[i] = Diagonal.values()[random.nextInt(Diagonal.values().length)];
+                index[i] = random.nextInt(GRID * GRID / 2);
+            } while (!diagonal[i].hasNext(index[i]));
+
+            from[i] = diagonal[i].getNext(index[i]);
+            occupied[i] = 1l << index[i];
+
+            while (Long.bitCount(occupied[i]) < pieces) {
+                occupied[i] |= 1l << random.nextInt(GRID * GRID / 2) & ~from[i];
+            }
+
+            if (diagonal[i].getLine(occupied[i], from[i]) != getLine(diagonal[i], index[i], occupied[i], from[i])) {
+                throw new IllegalStateException(diagonal[i] + " " + index[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public long table() {
+        long lines = 0l;
+
+        for (int i = 0; i < LINES; i++) {
+            lines ^= diagonal[i].getLine(occupied[i], from[i]);
+        }
+
+        return lines;
+    }
+
+    @Benchmark
+    public long arithmetic() {
+        long lines = 0l;
+
+        for (int i = 0; i < LINES; i++) {
+            lines ^= getLine(diagonal[i], index[i], occupied[i], from[i]);
+        }
+
+        return lines;
+    }
+
+}
@@ -0,0 +1,85 @@
+package internationaldraughts;
+
+import internationaldraughts.Position.MoveList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * EvaluationBenchmark
+ * 
+ * Leaf evaluation as MinMax does it at depth 0: generate the captures, a quiet leaf stands pat (patterns),
+ * a capture continues the search (quiescence).
+ * Incremental (Evaluation.getValue per move) against full (Evaluation.valueOf, all pieces) evaluation.
+ * 
+ * @author Naardeze
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+    @Param({"start", "middlegame", "endgame", "kings"})
+    public String position;
+    
+    private Position start;
+    private long[] startMoves;
+    
+    final private MoveList moves = new MoveList();
+    
+    @Setup
+    public void setup() {
+        start = Positions.get(position);
+        startMoves = start.getMoves();
+    }
+    
+    @Benchmark
+    public int leaf() {
+        Position.getCaptureMoves(start.color, start.turn, start.opponent, start.kings, moves);
+        
+        if (moves.size > 0) {
+            return Integer.MIN_VALUE;
+        }
+        
+        return Evaluation.getPattern(start.color, start.turn, start.opponent, start.kings);
+    }
+    
+    //per move
+    @Benchmark
+    public int incremental() {
+        int value = 0;
+        
+        for (long move : startMoves) {
+            value += Evaluation.getValue(start.color, start.kings, move);
+        }
+        
+        return value;
+    }
+    
+    //per move
+    @Benchmark
+    public int full() {
+        int value = 0;
+        
+        for (long move : startMoves) {
+            long turn = start.turn ^ (1l << Position.getFrom(move) ^ 1l << Position.getTo(move));
+            
+            value += Evaluation.valueOf(start.color, turn, start.opponent ^ Position.getCaptures(move), Position.getKings(start.color, start.kings, move));
+        }
+        
+        return value;
+    }
+    
+}
@@ -0,0 +1,59 @@
+package internationaldraughts;
+
+import internationaldraughts.Position.MoveList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MoveGeneratorBenchmark
+ * 
+ * Position.getMoves (allocation free, as in the search) for quiet, capture heavy and king heavy positions.
+ * generate -> 1 position, perft -> leaves of a depth 3 tree (generator + make).
+ * 
+ * @author Naardeze
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGeneratorBenchmark {
+    @Param({"start", "middlegame", "captures", "kingcaptures", "kings"})
+    public String position;
+    
+    private Position start;
+    private Perft perft;
+    
+    final private MoveList moves = new MoveList();
+    
+    @Setup
+    public void setup() {
+        start = Positions.get(position);
+        perft = new Perft();
+    }
+    
+    @Benchmark
+    public int generate() {
+        Position.getMoves(start.color, start.turn, start.opponent, start.kings, moves);
+        
+        return moves.size;
+    }
+    
+    @Benchmark
+    public long perft() {
+        return perft.perft(start, 3);
+    }
+    
+}
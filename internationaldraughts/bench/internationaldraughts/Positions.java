@@ -0,0 +1,34 @@
+package internationaldraughts;
+
+/**
+ * Positions
+ * 
+ * Standard benchmark positions (FEN) by name.
+ * 
+ * @author Naardeze
+ */
+
+class Positions {
+    
+    static Position get(String name) {
+        switch (name) {
+            case "start":
+                return new Position(Position.START);
+            case "woldouby":
+                return new Position("W:W25,27,28,30,32,33,34,35,37,38:B12,13,14,16,18,19,21,23,24,26");
+            case "middlegame":
+                return new Position("W:W27,28,32,33,34,36,37,38,39,40,42,43,44,45,47:B4,6,8,9,11,12,13,14,16,17,18,19,22,23,26");
+            case "captures":
+                return new Position("B:W6,9,10,11,20,21,22,23,30,K31,33,37,41,42,43,44,46:BK17,K24");
+            case "kingcaptures":
+                return new Position("W:WK28:B7,9,12,18,19,22,23,31,32,33,37,39,40");
+            case "kings":
+                return new Position("W:WK3,K28,K47:BK5,K29,K41,K46");
+            case "endgame":
+                return new Position("W:W28,32,33,38,K49:BK19,K23,24,26");
+        }
+        
+        throw new IllegalArgumentException(name);
+    }
+    
+}
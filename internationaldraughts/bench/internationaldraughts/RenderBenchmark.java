@@ -0,0 +1,148 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Game.EMPTY;
+import static internationaldraughts.Game.WB;
+import static internationaldraughts.Position.getFrom;
+import static internationaldraughts.Position.getTo;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.ImageIcon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RenderBenchmark
+ *
+ * Headless painting of 1 animation frame (a quiet move of the middlegame position, marked) into an image of the board size.
+ * former -> all tiles filled and all pieces drawn (Toolkit images, getScaledInstance, kept here as reference),
+ * full -> board image and sprites (Board, Game.paintTiles), all tiles,
+ * dirty -> board image and sprites, clip of the tiles the move touched (as Game.update repaints).
+ * The time of a repaint over remote X (VNC) grows with the painted area, dirty paints 2 tiles of 100.
+ *
+ * @author Naardeze
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    @Param({"40", "80"})
+    public int size;
+
+    final private Rectangle[] tile = new Rectangle[GRID * GRID / 2];
+    final private Image[][] former = new Image[WB.length()][2];
+    final private Color[] mark = new Color[tile.length];
+
+    private Image[][] piece;
+    private BufferedImage background;
+    private char[] board;
+    private Rectangle dirty;
+
+    private BufferedImage screen;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() {
+        Position position = Positions.get("middlegame");
+        long move = 0l;
+
+        for (long legal : position.getMoves()) {
+            if (Position.getCaptures(legal) == 0l) {
+                move = legal;
+            }
+        }
+
+        for (int i = 0; i < tile.length; i++) {
+            tile[i] = new Rectangle(Board.x(i) * size, Board.y(i) * size, size, size);
+        }
+
+        for (char color : WB.toCharArray()) {
+            former[WB.indexOf(color)][0] = new ImageIcon(Toolkit.getDefaultToolkit().createImage(color + ".png").getScaledInstance(size, size, Image.SCALE_SMOOTH)).getImage();
+            former[WB.indexOf(color)][1] = new ImageIcon(Toolkit.getDefaultToolkit().createImage(color + "k.png").getScaledInstance(size, size, Image.SCALE_SMOOTH)).getImage();
+        }
+
+        piece = Board.getSprites(size, size);
+        background = Board.createBackground(GRID * size, GRID * size, tile);
+        board = position.play(move).getBoard();
+
+        mark[getFrom(move)] = Color.yellow;
+        mark[getTo(move)] = Color.green;
+
+        dirty = tile[getFrom(move)].union(tile[getTo(move)]);
+
+        screen = new BufferedImage(GRID * size, GRID * size, BufferedImage.TYPE_INT_RGB);
+        g = screen.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage former() {
+        g.setClip(null);
+        g.setColor(Color.white);
+        g.fillRect(0, 0, screen.getWidth(), screen.getHeight());
+        g.setColor(Color.lightGray);
+
+        for (Rectangle rectangle : tile) {
+            Board.paintTile(g, rectangle);
+        }
+
+        for (int i = 0; i < tile.length; i++) {
+            if (mark[i] != null) {
+                g.setColor(mark[i]);
+                Board.paintTile(g, tile[i]);
+            }
+        }
+
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != EMPTY) {
+                g.drawImage(former[WB.indexOf(Character.toLowerCase(board[i]))][Character.isUpperCase(board[i]) ? 1 : 0], tile[i].x, tile[i].y, null);
+            }
+        }
+
+        return screen;
+    }
+
+    @Benchmark
+    public BufferedImage full() {
+        g.setClip(null);
+        g.drawImage(background, 0, 0, null);
+
+        Game.paintTiles(g, tile, board, mark, piece);
+
+        return screen;
+    }
+
+    @Benchmark
+    public BufferedImage dirty() {
+        g.setClip(dirty);
+        g.drawImage(background, 0, 0, null);
+
+        Game.paintTiles(g, tile, board, mark, piece);
+
+        return screen;
+    }
+
+}
@@ -0,0 +1,75 @@
+package internationaldraughts;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SearchBenchmark
+ * 
+ * Fixed depth search (MinMax.Engine.getNodes: 1 thread) over the standard positions.
+ * Table and history are cleared before each invocation (setup, not timed): the time is the search only.
+ * AverageTime -> time to depth, Throughput -> searches and nodes per second.
+ * 
+ * @author Naardeze
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"start", "woldouby", "middlegame", "captures", "kings"})
+    public String position;
+    
+    @Param({"3", "5"})
+    public int depth;
+    
+    private Position start;
+    
+    final private MinMax.Engine engine = new MinMax.Engine();
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+        
+        @Setup(Level.Iteration)
+        public void clear() {
+            nodes = 0l;
+        }
+    }
+    
+    @Setup
+    public void setup() {
+        start = Positions.get(position);
+    }
+    
+    @Setup(Level.Invocation)
+    public void clear() {
+        engine.clear();
+    }
+    
+    @Benchmark
+    public long search(Nodes nodes) {
+        long count = engine.getNodes(start, depth);
+        
+        nodes.nodes += count;
+        
+        return count;
+    }
+    
+}
@@ -0,0 +1,452 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.BLACK;
+import static internationaldraughts.Board.WHITE;
+import internationaldraughts.MinMax.Engine;
+import internationaldraughts.MinMax.Line;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Analysis (main)
+ *
+ * Headless batch analysis of PDN game collections (no Swing, no Game or Board): every position of every game is searched
+ * (MinMax.Engine, 1 per worker, 1 thread per search, the game before it as History) at a fixed level, played moves that lose too much are flagged as blunders.
+ * The PDN is streamed (game by game), games are analysed by a pool of workers and written in input order.
+ * Memory is bounded: at most 2 games per worker are read ahead or waiting to be written.
+ * Score: 1/100 man for the side to move (win or loss = +-WIN), loss = best score - score of the played move.
+ * Output: annotated PDN (score of the played move per move, blunder: ? + best move) or JSON lines (1 line per position).
+ * Lines (k > 1, JSON): the best k moves per position (multi pv, 1 search) with score and principal variation.
+ * Text: tags ([Name "Value"], FEN), move numbers, moves (32-28, 28x19), comments ({} and ;), variations (skipped), results.
+ *
+ * -pdn file (- = stdin) -out file (default stdout) -format pdn|json -level "depth=8" | "move-time=0.5" | "nodes=100000"
+ * -concurrency cores -hash 16 -blunder 100 -lines 1
+ *
+ * class Record -> game: tags, start position, moves (text) and result
+ * class PDN -> game reader (stream)
+ *
+ * @author Naardeze
+ */
+
+class Analysis {
+    final static int WIN = 100 * Evaluation.MAN;
+
+    final private static String[] RESULTS = {"2-0", "0-2", "1-1", "0-0", "*"};
+
+    static class Record {
+        final int number;
+        final ArrayList<String> tags = new ArrayList();
+        final ArrayList<String> moves = new ArrayList();
+
+        String fen = Position.START;
+        String result = "*";
+
+        Record(int number) {
+            this.number = number;
+        }
+    }
+
+    static class PDN {
+        final private PushbackReader in;
+        private int number = 0;
+
+        PDN(Reader in) {
+            this.in = new PushbackReader(new BufferedReader(in));
+        }
+
+        private int read() throws IOException {
+            return in.read();
+        }
+
+        //characters up to (excluded) end or the end of the stream
+        private String readUntil(char end) throws IOException {
+            StringBuilder text = new StringBuilder();
+
+            for (int c = read(); c != -1 && c != end; c = read()) {
+                text.append((char) c);
+            }
+
+            return text.toString();
+        }
+
+        //next game or null (end of the stream)
+        Record next() throws IOException {
+            Record record = null;
+
+            for (int c = read(); c != -1; c = read()) {
+                if (Character.isWhitespace(c)) {
+                    continue;
+                } else if (c == '[') {
+                    //a tag after the moves starts the next game (no result)
+                    if (record != null && !record.moves.isEmpty()) {
+                        in.unread(c);
+                        return record;
+                    } else if (record == null) {
+                        record = new Record(++number);
+                    }
+
+                    String tag = readUntil(']').trim();
+                    int quote = tag.indexOf('"');
+
+                    record.tags.add("[" + tag + "]");
+
+                    if (quote != -1 && tag.substring(0, quote).trim().equalsIgnoreCase("FEN")) {
+                        record.fen = tag.substring(quote + 1, Math.max(quote + 1, tag.lastIndexOf('"'))).replaceAll("[^WBK0-9,:\\-]", "");
+                    }
+                } else if (c == '{') {
+                    readUntil('}');
+                } else if (c == ';') {
+                    readUntil('\n');
+                } else if (c == '(') {
+                    for (int depth = 1; depth > 0 && c != -1; ) {
+                        c = read();
+                        depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+                    }
+                } else {
+                    StringBuilder token = new StringBuilder();
+
+                    for (; c != -1 && !Character.isWhitespace(c) && "[{(;".indexOf(c) == -1; c = read()) {
+                        token.append((char) c);
+                    }
+
+                    if (c != -1) {
+                        in.unread(c);
+                    }
+
+                    if (record == null) {
+                        record = new Record(++number);
+                    }
+
+                    String move = token.toString().replaceFirst("^[0-9]+\\.+", "");
+
+                    for (String result : RESULTS) {
+                        if (move.equals(result)) {
+                            record.result = result;
+                            return record;
+                        }
+                    }
+
+                    move = move.replaceAll("[!?+]+$", "");
+
+                    if (move.matches("[0-9]+([-x][0-9]+)+")) {
+                        record.moves.add(move);
+                    }
+                }
+            }
+
+            return record;
+        }
+    }
+
+    private String pdn = "-";
+    private String out = "-";
+    private boolean isJSON = false;
+    private long time = Long.MAX_VALUE;
+    private long nodes = Long.MAX_VALUE;
+    private int depth = 4;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private int hash = 16;
+    private int blunder = Evaluation.MAN;
+    private int lines = 1;
+
+    //written in input order (game number)
+    final private HashMap<Integer, String> done = new HashMap();
+    private int written = 1;
+    private PrintWriter writer;
+    private Semaphore ahead;
+
+    final private AtomicLong positions = new AtomicLong();
+    final private AtomicLong blunders = new AtomicLong();
+
+    private Analysis(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-pdn":
+                    pdn = args[i + 1];
+                    break;
+                case "-out":
+                    out = args[i + 1];
+                    break;
+                case "-format":
+                    if (!args[i + 1].equals("pdn") && !args[i + 1].equals("json")) {
+                        throw new IllegalArgumentException(args[i + 1]);
+                    }
+
+                    isJSON = args[i + 1].equals("json");
+                    break;
+                case "-level":
+                    HashMap<String, String> arguments = Hub.getArguments("level " + args[i + 1]);
+
+                    time = arguments.containsKey("move-time") ? (long) (Double.parseDouble(arguments.get("move-time")) * 1000) : Long.MAX_VALUE;
+                    nodes = arguments.containsKey("nodes") ? Long.parseLong(arguments.get("nodes")) : Long.MAX_VALUE;
+                    //plies (Hub) -> MinMax depth, default when there is no other limit
+                    depth = arguments.containsKey("depth") ? Math.max(1, Integer.parseInt(arguments.get("depth")) / 2) : time == Long.MAX_VALUE && nodes == Long.MAX_VALUE ? 4 : Integer.MAX_VALUE;
+                    break;
+                case "-concurrency":
+                    concurrency = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "-hash":
+                    hash = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                case "-blunder":
+                    blunder = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-lines":
+                    lines = Math.max(1, Integer.parseInt(args[i + 1]));
+                    break;
+                default:
+                    throw new IllegalArgumentException(args[i]);
+            }
+        }
+    }
+
+    //MinMax score (root color) -> 1/100 man, win or loss = +-WIN
+    private static int toScore(int score) {
+        return score >= Integer.MAX_VALUE / 2 ? WIN : score <= Integer.MIN_VALUE / 2 ? -WIN : Math.max(1 - WIN, Math.min(WIN - 1, score));
+    }
+
+    private static String toText(int score) {
+        return score == WIN ? "win" : score == -WIN ? "loss" : String.format(Locale.ROOT, "%+.2f", score / (double) Evaluation.MAN);
+    }
+
+    //"move score pv" per line (JSON array)
+    private static String toJSON(ArrayList<Line> lines) {
+        StringBuilder json = new StringBuilder("[");
+
+        for (Line line : lines) {
+            StringBuilder pv = new StringBuilder();
+
+            for (long move : line.pv) {
+                pv.append(pv.length() == 0 ? "" : " ").append(Position.toString(move));
+            }
+
+            json.append(json.length() == 1 ? "" : ",").append(String.format(Locale.ROOT, "{\"move\":\"%s\",\"score\":%d,\"pv\":\"%s\"}", Position.toString(line.move), toScore(line.score), pv));
+        }
+
+        return json.append(']').toString();
+    }
+
+    //scores (side to move), best moves and lines (searched positions) of positions (played)
+    private void analyse(Engine engine, ArrayList<Position> positions, ArrayList<Long> played, int[] score, long[] best, String[] lines) {
+        boolean[] isForced = new boolean[positions.size()];
+        History game = new History(positions.get(0));
+
+        engine.clear();
+
+        for (int ply = 0; ply < positions.size(); ply++) {
+            Position position = positions.get(ply);
+
+            if (ply > 0) {
+                game.add(played.get(ply - 1));
+            }
+
+            long[] moves = position.getMoves();
+
+            if (moves.length == 0) {
+                score[ply] = -WIN;
+            } else if (moves.length == 1) {
+                //no search (1 root move): the score of the next position
+                best[ply] = moves[0];
+                isForced[ply] = true;
+            } else {
+                ArrayList<Line> found = engine.getLines(game, this.lines, time, nodes, depth, null);
+
+                best[ply] = found.get(0).move;
+                score[ply] = toScore(found.get(0).score);
+                lines[ply] = toJSON(found);
+            }
+        }
+
+        //back to front, a forced last position gets its evaluation
+        for (int ply = positions.size() - 1; ply >= 0; ply--) {
+            if (isForced[ply]) {
+                Position position = positions.get(ply);
+
+                score[ply] = ply + 1 < positions.size() ? -score[ply + 1] : Evaluation.valueOf(position.color, position.turn, position.opponent, position.kings);
+                lines[ply] = String.format(Locale.ROOT, "[{\"move\":\"%s\",\"score\":%d,\"pv\":\"%1$s\"}]", Position.toString(best[ply]), score[ply]);
+            }
+        }
+
+        this.positions.addAndGet(positions.size());
+    }
+
+    private String getText(Record record) {
+        Position position = Hub.getPosition(record.fen);
+        ArrayList<Position> positions = new ArrayList();
+        ArrayList<Long> played = new ArrayList();
+
+        positions.add(position);
+
+        for (String move : record.moves) {
+            try {
+                played.add(position.getMove(move));
+            } catch (RuntimeException ex) {
+                System.err.println("game " + record.number + ": illegal move " + move + " (analysed up to it)");
+                break;
+            }
+
+            position = position.play(played.get(played.size() - 1));
+            positions.add(position);
+        }
+
+        int[] score = new int[positions.size()];
+        long[] best = new long[positions.size()];
+        String[] lines = new String[positions.size()];
+
+        analyse(engine.get(), positions, played, score, best, lines);
+
+        StringBuilder text = new StringBuilder();
+        int color = positions.get(0).color;
+        int number = 1;
+
+        if (!isJSON) {
+            for (String tag : record.tags) {
+                text.append(tag).append('\n');
+            }
+
+            text.append('\n');
+
+            if (color == BLACK) {
+                text.append("1... ");
+            }
+        }
+
+        for (int ply = 0; ply < record.moves.size(); ply++) {
+            boolean isAnalysed = ply < played.size();
+            //loss of the played move (the best move loses nothing)
+            int value = isAnalysed ? -score[ply + 1] : 0;
+            int loss = isAnalysed && played.get(ply) != best[ply] ? Math.max(0, score[ply] - value) : 0;
+            boolean isBlunder = loss >= blunder;
+
+            if (isBlunder) {
+                blunders.incrementAndGet();
+            }
+
+            if (isJSON) {
+                if (isAnalysed) {
+                    text.append(String.format(Locale.ROOT, "{\"game\":%d,\"ply\":%d,\"fen\":\"%s\",\"move\":\"%s\",\"best\":\"%s\",\"score\":%d,\"played\":%d,\"loss\":%d,\"blunder\":%b%s}\n", record.number, ply, positions.get(ply), record.moves.get(ply), Position.toString(best[ply]), score[ply], value, loss, isBlunder, this.lines > 1 ? ",\"lines\":" + lines[ply] : ""));
+                }
+            } else {
+                if (color == WHITE) {
+                    text.append(number).append(". ");
+                }
+
+                text.append(record.moves.get(ply));
+
+                if (isAnalysed) {
+                    text.append(isBlunder ? "? {" : " {").append(toText(value)).append(isBlunder ? " best " + Position.toString(best[ply]) + " " + toText(score[ply]) : "").append("} ");
+                } else {
+                    text.append(' ');
+                }
+
+                number += color;
+                color = 1 - color;
+            }
+        }
+
+        if (!isJSON) {
+            text.append(record.result).append("\n\n");
+        }
+
+        return text.toString();
+    }
+
+    //1 engine per worker (thread)
+    final private ThreadLocal<Engine> engine = new ThreadLocal<Engine>() {
+        @Override
+        protected Engine initialValue() {
+            Engine engine = new Engine();
+
+            engine.setHash(hash);
+
+            return engine;
+        }
+    };
+
+    private synchronized void write(Record record, String text) {
+        done.put(record.number, text);
+
+        for (String next = done.remove(written); next != null; next = done.remove(written)) {
+            writer.print(next);
+            written++;
+            ahead.release();
+        }
+
+        writer.flush();
+    }
+
+    private void worker(BlockingQueue<Record> queue) {
+        try {
+            for (Record record = queue.take(); record.number != 0; record = queue.take()) {
+                String text;
+
+                try {
+                    text = getText(record);
+                } catch (RuntimeException ex) {
+                    System.err.println("game " + record.number + ": " + ex);
+                    text = "";
+                }
+
+                write(record, text);
+            }
+        } catch (InterruptedException ex) {}
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Analysis analysis = new Analysis(args);
+        BlockingQueue<Record> queue = new ArrayBlockingQueue(analysis.concurrency);
+        Thread[] workers = new Thread[analysis.concurrency];
+        long start = System.currentTimeMillis();
+        int games = 0;
+
+        //parallel games, 1 thread per search
+        MinMax.threads = 1;
+
+        analysis.ahead = new Semaphore(2 * analysis.concurrency);
+        analysis.writer = new PrintWriter(new OutputStreamWriter(analysis.out.equals("-") ? System.out : new FileOutputStream(analysis.out), StandardCharsets.UTF_8));
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> analysis.worker(queue));
+            workers[i].start();
+        }
+
+        try (Reader in = new InputStreamReader(analysis.pdn.equals("-") ? System.in : new FileInputStream(analysis.pdn), StandardCharsets.UTF_8)) {
+            PDN pdn = new PDN(in);
+
+            for (Record record = pdn.next(); record != null; record = pdn.next()) {
+                analysis.ahead.acquire();
+                queue.put(record);
+                games++;
+            }
+        } finally {
+            //stop (game 0) per worker
+            for (Thread worker : workers) {
+                queue.put(new Record(0));
+            }
+
+            for (Thread worker : workers) {
+                worker.join();
+            }
+
+            analysis.writer.close();
+        }
+
+        System.err.println(String.format(Locale.ROOT, "%d games, %d positions, %d blunders, %.1f s", games, analysis.positions.get(), analysis.blunders.get(), (System.currentTimeMillis() - start) / 1000.0));
+    }
+
+}
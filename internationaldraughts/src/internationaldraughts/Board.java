@@ -1,6 +1,5 @@
 package internationaldraughts;
 
-import static internationaldraughts.Game.PIECE;
 import static internationaldraughts.Game.WB;
 import java.awt.BorderLayout;
 import java.awt.Color;
@@ -8,19 +7,28 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridLayout;
 import java.awt.Image;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ContainerAdapter;
 import java.awt.event.ContainerEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
+import javax.imageio.ImageIO;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -37,11 +45,15 @@ import javax.swing.JSlider;
  * When the board is sized the tiles and piece images are also sized (x and y (static)).
  * static paintTile paints a tile (board or game).
  * 
+ * Rendering is cached: the piece images (png) are read once and scaled per size to compatible images (sprites, kept per size),
+ * the board (light and dark tiles) is an image that is drawn at once (new on resize and rotate).
+ * Game repaints only the tiles that changed.
+ * 
  * main handles the setup and layout of the frame.
  * 
  * the menubar contains 2 menus:
  * 1: Game -> white or black
- * 2: AI -> level 1-5 -> 1 level = 2 moves
+ * 2: AI -> level 1-5 -> thinking time per move (0.25, 0.5, 1, 2 or 4 seconds) and ponder (think on the player's time)
  * 
  * Extra option are:
  * -undo move
@@ -63,6 +75,7 @@ class Board extends JPanel implements ActionListener {
     final private static Color DARK = Color.lightGray;
     
     final static JSlider LEVEL = new JSlider(1, 5);
+    final static JCheckBoxMenuItem PONDER = new JCheckBoxMenuItem("Ponder", true);
     
     final static Board BOARD = new Board();
     
@@ -72,8 +85,20 @@ class Board extends JPanel implements ActionListener {
     
     private static Game game = new Game(WHITE);
     
+    //png per color: man, king (read once)
+    final private static BufferedImage[][] SOURCE = new BufferedImage[WB.length()][2];
+    
+    //sprites per size
+    final private static HashMap<Dimension, Image[][]> SPRITES = new HashMap();
+    
     final Rectangle[] tile = new Rectangle[GRID * GRID / 2];
     
+    //sprites of the tile size
+    Image[][] piece = new Image[WB.length()][2];
+    
+    //light and dark tiles (null -> new on paint)
+    private BufferedImage background = null;
+    
     private Board() {
         super(new BorderLayout());
         
@@ -90,10 +115,11 @@ class Board extends JPanel implements ActionListener {
                     tile[i] = new Rectangle(x(i) * width, y(i) * height, width, height);
                 }
 
-                for (char color : WB.toCharArray()) {
-                    PIECE[WB.indexOf(color)][0] = Toolkit.getDefaultToolkit().createImage(color + ".png").getScaledInstance(width, height, Image.SCALE_SMOOTH);
-                    PIECE[WB.indexOf(color)][1] = Toolkit.getDefaultToolkit().createImage(color + "k.png").getScaledInstance(width, height, Image.SCALE_SMOOTH);
+                if (width > 0 && height > 0) {
+                    piece = getSprites(width, height);
                 }
+                
+                background = null;
             }
         });
     }
@@ -110,13 +136,98 @@ class Board extends JPanel implements ActionListener {
         g.fillRect(tile.x, tile.y, tile.width, tile.height);
     }
     
+    //image in the format of the screen (drawn without conversion, kept in video memory if possible), headless -> argb
+    static BufferedImage createImage(int width, int height, int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+    }
+    
+    //png (null if not readable: no piece drawn)
+    private static BufferedImage read(String name) {
+        try {
+            return ImageIO.read(new File(name));
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+    
+    //source halved (bilinear) until 2x size or less, then to size (smooth as SCALE_SMOOTH)
+    private static Image scale(BufferedImage source, int width, int height) {
+        Image image = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            
+            BufferedImage step = w == width && h == height ? createImage(w, h, Transparency.TRANSLUCENT) : new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = step.createGraphics();
+            
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, w, h, null);
+            g.dispose();
+            
+            image = step;
+        } while (w != width || h != height);
+        
+        return image;
+    }
+    
+    //sprites of size (scaled once per size)
+    static synchronized Image[][] getSprites(int width, int height) {
+        Dimension size = new Dimension(width, height);
+        
+        if (!SPRITES.containsKey(size)) {
+            Image[][] sprites = new Image[WB.length()][2];
+            
+            for (char color : WB.toCharArray()) {
+                for (int king = 0; king < 2; king++) {
+                    if (SOURCE[WB.indexOf(color)][king] == null) {
+                        SOURCE[WB.indexOf(color)][king] = read(color + (king == 0 ? "" : "k") + ".png");
+                    }
+                    
+                    if (SOURCE[WB.indexOf(color)][king] != null) {
+                        sprites[WB.indexOf(color)][king] = scale(SOURCE[WB.indexOf(color)][king], width, height);
+                    }
+                }
+            }
+            
+            SPRITES.put(size, sprites);
+        }
+        
+        return SPRITES.get(size);
+    }
+    
+    //light with dark tiles
+    static BufferedImage createBackground(int width, int height, Rectangle[] tile) {
+        BufferedImage background = createImage(width, height, Transparency.OPAQUE);
+        Graphics g = background.createGraphics();
+        
+        g.setColor(LIGHT);
+        g.fillRect(0, 0, width, height);
+        g.setColor(DARK);
+        
+        for (Rectangle rectangle : tile) {
+            paintTile(g, rectangle);
+        }
+        
+        g.dispose();
+        
+        return background;
+    }
+    
+    //clip only (dirty tiles)
     @Override
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-
-        for (Rectangle tile : tile) {
-            paintTile(g, tile);
+        if (background == null) {
+            background = createBackground(getWidth(), getHeight(), tile);
         }
+        
+        g.drawImage(background, 0, 0, null);
     }
 
     @Override
@@ -125,6 +236,8 @@ class Board extends JPanel implements ActionListener {
             tile.setLocation(getWidth() - tile.x - tile.width, getHeight() - tile.y - tile.height);
         }
         
+        background = null;
+        
         repaint();
     }
     
@@ -158,6 +271,7 @@ class Board extends JPanel implements ActionListener {
         }
                 
         aiMenu.add(LEVEL);
+        aiMenu.add(PONDER);
                 
         LEVEL.setMajorTickSpacing(1);
         LEVEL.setPaintLabels(true);
@@ -187,7 +301,7 @@ class Board extends JPanel implements ActionListener {
         WINNER.setHorizontalAlignment(JLabel.CENTER);
         
         MOVEABLE.setFocusable(false);
-        MOVEABLE.addActionListener(e -> game.repaint());
+        MOVEABLE.addActionListener(e -> game.update());
         
         rotate.setContentAreaFilled(false);
         rotate.setBorder(null);
@@ -0,0 +1,247 @@
+package internationaldraughts;
+
+import static internationaldraughts.Position.getCaptures;
+import static internationaldraughts.Position.getFrom;
+import internationaldraughts.MinMax.Engine;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Draws
+ *
+ * Headless check of the draw rules (History and the search, MinMax): 3 fold repetition, 25 move rule (50 king plies),
+ * lone king endgames (3 pieces: 16 moves, 2 pieces: 5 moves) and the counter resets (man move, capture, promotion, undo).
+ * Tablebase: a table win longer than the plies the rules leave is a draw (tables of 3 pieces, temporary directory).
+ * Long king sequences are random walks (fixed seeds): quiet king moves that leave no capture and no draw.
+ *
+ * draws -> suite, exit 1 on failure.
+ *
+ * @author Naardeze
+ */
+
+class Draws {
+    final private static int DEPTH = 3;
+    final private static int SEEDS = 100;
+    final private static int TABLES = 3;
+    final private static int WIN = Integer.MAX_VALUE / 2;
+
+    private static boolean isPassed = true;
+
+    private static void check(String name, boolean isOk) {
+        System.out.println((isOk ? "ok   " : "FAIL ") + name);
+
+        if (!isOk) {
+            isPassed = false;
+        }
+    }
+
+    //moves (notation) from position
+    private static History play(String fen, String moves) {
+        History game = new History(new Position(fen));
+
+        for (String move : moves.split(" ")) {
+            game.add(game.getPosition().getMove(move));
+        }
+
+        return game;
+    }
+
+    //plies quiet king moves (random, seed) that leave no capture and no draw (null: no such walk)
+    private static History walk(String fen, int plies, long seed) {
+        Random random = new Random(seed);
+        History game = new History(new Position(fen));
+
+        while (game.size() < plies) {
+            Position position = game.getPosition();
+            ArrayList<Long> moves = new ArrayList();
+
+            for (long move : position.getMoves()) {
+                if (getCaptures(move) != 0l || (position.kings >>> getFrom(move) & 1l) == 0l) {
+                    continue;
+                }
+
+                History next = new History(game);
+
+                next.add(move);
+
+                if (!next.isDraw() && !hasCapture(next.getPosition())) {
+                    moves.add(move);
+                }
+            }
+
+            if (moves.isEmpty()) {
+                return null;
+            }
+
+            game.add(moves.get(random.nextInt(moves.size())));
+        }
+
+        return game;
+    }
+
+    private static boolean hasCapture(Position position) {
+        long[] moves = position.getMoves();
+
+        return moves.length > 0 && getCaptures(moves[0]) != 0l;
+    }
+
+    private static History walk(String fen, int plies) {
+        for (long seed = 0l; seed < SEEDS; seed++) {
+            History game = walk(fen, plies, seed);
+
+            if (game != null) {
+                return game;
+            }
+        }
+
+        throw new IllegalStateException(fen + " " + plies);
+    }
+
+    //score of the side to move (fixed depth, 1 thread)
+    private static int getScore(History game) {
+        return new Engine().getLines(game, 1, Long.MAX_VALUE, Long.MAX_VALUE, DEPTH, null).get(0).score;
+    }
+
+    private static void repetition() {
+        //kings back and forth, the men (more than 4 pieces) keep the endgame rules out
+        String fen = "W:WK46,36,37,38,39:BK5,11,12,13,14";
+        History game = play(fen, "46-41 5-10 41-46 10-5");
+
+        check("repetition 2 times: no draw", game.getRepetition() == 2 && !game.isDraw());
+
+        game = play(fen, "46-41 5-10 41-46 10-5 46-41 5-10 41-46 10-5");
+
+        check("repetition 3 times: draw", game.getRepetition() == 3 && game.isDraw());
+
+        game.undo();
+
+        check("repetition undo: 2 times, no draw", game.getRepetition() == 2 && !game.isDraw());
+
+        game = play(fen, "46-41 5-10 41-46 10-5 36-31 11-16 46-41 5-10 41-46 10-5");
+
+        check("repetition man move: count restarts", game.getReversible() == 4 && game.getRepetition() == 2 && !game.isDraw());
+    }
+
+    private static void kingMoves() {
+        String fen = "W:WK46,36,37,38,39:BK5,11,12,13,14";
+        History game = play(fen, "46-41 5-10 41-47");
+
+        check("25 moves: king moves counted", game.getReversible() == 3);
+
+        game = play(fen, "46-41 5-10 36-31");
+
+        check("25 moves: man move resets", game.getReversible() == 0);
+
+        Position position = game.getPosition();
+
+        check("25 moves: 49 plies no draw", !History.isDraw(History.KING_MOVES - 1, 0, position.turn, position.opponent, position.kings));
+        check("25 moves: 50 plies draw", History.isDraw(History.KING_MOVES, 0, position.turn, position.opponent, position.kings));
+
+        //kings only (white), the edge men (black) can not be captured, black (to move, behind) takes the draw
+        game = walk("W:WK26,K36,K46,K47:BK15,1,2,3,4,5", History.KING_MOVES - 1);
+
+        check("25 moves: walk 49 plies no draw", game.getReversible() == History.KING_MOVES - 1 && !game.isDraw());
+
+        int score = getScore(game);
+        int fresh = getScore(new History(game.getPosition()));
+
+        check("25 moves: search 1 ply before the rule scores 0 (" + fresh + " without the game)", score == 0 && fresh != 0);
+    }
+
+    private static void endgame() {
+        History game = walk("W:WK1,K2,K3:BK28", History.ENDGAME - 1);
+
+        check("3 pieces against a king: 31 plies no draw", game.getEndgame() == History.ENDGAME - 1 && !game.isDraw());
+        check("3 pieces against a king: search 1 ply before the rule scores 0", getScore(game) == 0);
+
+        game.add(getKingMove(game));
+
+        check("3 pieces against a king: 32 plies draw", game.isDraw());
+
+        game = walk("W:WK1,K2:BK28", History.SHORT_ENDGAME - 1);
+
+        check("2 pieces against a king: 9 plies no draw", game.getEndgame() == History.SHORT_ENDGAME - 1 && !game.isDraw());
+        check("2 pieces against a king: search 1 ply before the rule scores 0", getScore(game) == 0);
+
+        game.add(getKingMove(game));
+
+        check("2 pieces against a king: 10 plies draw", game.isDraw());
+
+        Position position = new Position("W:WK46,K47,K48,K49:BK5");
+
+        check("4 pieces against a king: no rule", !History.isDraw(0, 100, position.turn, position.opponent, position.kings));
+
+        position = new Position("W:WK46,K47,K48:B5");
+
+        check("3 pieces against a man: no rule", !History.isDraw(0, 100, position.turn, position.opponent, position.kings));
+
+        //promotion (7-2) and capture (41x5) restart the counter
+        game = play("W:W7,K36:BK15", "36-31 15-20 7-2");
+
+        check("endgame: promotion restarts", game.getEndgame() == 0);
+
+        game = play("W:WK46,K47:BK5,35", "47-41 5-10");
+
+        check("endgame: quiet king moves counted", game.getEndgame() == 2);
+
+        game = play("W:WK46,K47:BK5,35", "47-41 5-10 41x5");
+
+        check("endgame: capture restarts", game.getEndgame() == 0);
+    }
+
+    //first quiet king move of the game position
+    private static long getKingMove(History game) {
+        for (long move : game.getPosition().getMoves()) {
+            if ((game.getPosition().kings >>> getFrom(move) & 1l) == 1l && getCaptures(move) == 0l) {
+                return move;
+            }
+        }
+
+        throw new IllegalStateException();
+    }
+
+    //2 kings against a king (white to move, win in 7 plies): 2 or 3 plies of the 10 played
+    private static void tablebase() throws IOException, InterruptedException {
+        File directory = Files.createTempDirectory(Tablebase.DIRECTORY).toFile();
+        Tablebase tablebase = MinMax.tablebase;
+
+        try {
+            Tablebase.generate(TABLES, directory, Runtime.getRuntime().availableProcessors());
+            MinMax.tablebase = Tablebase.open(directory);
+
+            History game = play("W:WK1,K8:BK50", "8-2 50-45");
+            Position position = game.getPosition();
+
+            check("tablebase: win in 7 plies", MinMax.tablebase.probe(position.color, position.turn, position.opponent, position.kings) == 7);
+            check("tablebase: 8 plies left, search scores the win", History.getPlies(game.getReversible(), game.getEndgame(), position.turn, position.opponent, position.kings) == 8 && getScore(game) > WIN);
+
+            game = play("B:WK1,K8:BK44", "44-50 8-2 50-45");
+            position = game.getPosition();
+
+            check("tablebase: 7 plies left, search scores 0 (rule draw)", History.getPlies(game.getReversible(), game.getEndgame(), position.turn, position.opponent, position.kings) == 7 && getScore(game) == 0);
+        } finally {
+            MinMax.tablebase = tablebase;
+
+            for (File tb : directory.listFiles()) {
+                tb.delete();
+            }
+
+            directory.delete();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        MinMax.threads = 1;
+
+        repetition();
+        kingMoves();
+        endgame();
+        tablebase();
+
+        System.exit(isPassed ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,195 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Game.EMPTY;
+import internationaldraughts.MinMax.Engine;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dxp (main)
+ *
+ * Headless engine over DXP (draughts exchange protocol) on a local TCP port (default 27531).
+ * The engine is the follower: it waits for a game request of the initiator (GUI, match manager or other engine).
+ * The moves of the game are kept (History): repetitions and draw rules for the search.
+ * A message is 1 type char + fixed width fields, ended by a 0 byte. White is W, black is Z (zwart).
+ *
+ * R (gamereq) 01 name(32) follower color(1) minutes(3) moves(3) A (start) | B color(1) tiles(50 (wzWZe)) -> A (gameacc) name(32) 0
+ * M (move) seconds(4) from(2) to(2) captures(2) captured(2 each) -> M (engine move)
+ * E (gameend) reason(1) stop(1) -> E00 (no moves left -> E10 (lost))
+ * B (backreq) -> K1 (not supported), C (chat) -> ignored
+ *
+ * java -cp internationaldraughts.jar internationaldraughts.Dxp [port] [statistics] (statistics: search statistics line per move (stderr))
+ *
+ * @author Naardeze
+ */
+
+class Dxp {
+    final static int PORT = 27531;
+
+    final private static String WZ = "WZ";
+    final private static int VERSION = 1;
+
+    final private InputStream in;
+    final private OutputStream out;
+
+    final private Engine engine = new Engine();
+    
+    private History game = null;
+    private int color;
+    private long time;
+    private int moves;
+    
+    private static boolean isStatistics = false;
+
+    private Dxp(Socket socket) throws IOException {
+        in = socket.getInputStream();
+        out = socket.getOutputStream();
+    }
+
+    private String read() throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+        for (int b = in.read(); b != 0; b = in.read()) {
+            if (b == -1) {
+                return null;
+            }
+
+            message.write(b);
+        }
+
+        return new String(message.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private void send(String message) throws IOException {
+        out.write(message.getBytes(StandardCharsets.US_ASCII));
+        out.write(0);
+        out.flush();
+    }
+
+    //R 01 name follower color minutes moves A|B (color tiles)
+    private void gameRequest(String message) throws IOException {
+        color = WZ.indexOf(message.charAt(35));
+        time = Integer.parseInt(message.substring(36, 39).trim()) * 60000l;
+        moves = Integer.parseInt(message.substring(39, 42).trim());
+
+        Position position;
+
+        if (message.charAt(42) == 'B') {
+            position = new Position(message.substring(44, 44 + GRID * GRID / 2).replace('z', 'b').replace('Z', 'B').replace('e', EMPTY).toCharArray(), WZ.indexOf(message.charAt(43)));
+        } else {
+            position = new Position(Position.START);
+        }
+
+        game = new History(position);
+        engine.clear();
+        send("A" + String.format("%-32.32s", Hub.NAME) + "0");
+
+        if (position.color == color) {
+            play();
+        }
+    }
+
+    //M seconds from to count captured...
+    private void move(String message) throws IOException {
+        int from = Integer.parseInt(message.substring(5, 7).trim()) - 1;
+        int to = Integer.parseInt(message.substring(7, 9).trim()) - 1;
+        long captures = 0l;
+
+        for (int i = 0; i < Integer.parseInt(message.substring(9, 11).trim()); i++) {
+            captures ^= 1l << Integer.parseInt(message.substring(11 + 2 * i, 13 + 2 * i).trim()) - 1;
+        }
+
+        for (long move : game.getPosition().getMoves()) {
+            if (Position.getFrom(move) == from && Position.getTo(move) == to && Position.getCaptures(move) == captures) {
+                game.add(move);
+
+                play();
+                return;
+            }
+        }
+
+        throw new IllegalArgumentException(message);
+    }
+
+    private void play() throws IOException {
+        if (game.getPosition().getMoves().length == 0) {
+            send("E10");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long move = engine.getAIMove(game, time > 0l ? MinMax.getTime(time, 0l, moves) : MinMax.TIME, Long.MAX_VALUE);
+        long spent = System.currentTimeMillis() - start;
+        
+        if (isStatistics) {
+            System.err.println("statistics " + engine.getStatistics());
+        }
+        
+        String message = String.format("M%04d%02d%02d%02d", Math.min(9999l, spent / 1000), Position.getFrom(move) + 1, Position.getTo(move) + 1, Long.bitCount(Position.getCaptures(move)));
+
+        for (long captures = Position.getCaptures(move); captures != 0l; captures ^= Long.lowestOneBit(captures)) {
+            message += String.format("%02d", Long.numberOfTrailingZeros(captures) + 1);
+        }
+
+        game.add(move);
+        time = Math.max(1l, time - spent);
+        moves = Math.max(0, moves - 1);
+
+        send(message);
+    }
+
+    private void run() throws IOException {
+        for (String message = read(); message != null; message = read()) {
+            if (message.isEmpty()) {
+                continue;
+            }
+
+            switch (message.charAt(0)) {
+                case 'R':
+                    if (Integer.parseInt(message.substring(1, 3)) == VERSION) {
+                        gameRequest(message);
+                    } else {
+                        send("A" + String.format("%-32.32s", Hub.NAME) + "1");
+                    }
+                    break;
+                case 'M':
+                    if (game != null) {
+                        move(message);
+                    }
+                    break;
+                case 'E':
+                    game = null;
+                    send("E00");
+                    break;
+                case 'B':
+                    send("K1");
+                    break;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 && !args[0].equals("statistics") ? Integer.parseInt(args[0]) : PORT;
+        
+        isStatistics = Arrays.asList(args).contains("statistics");
+        
+        try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    new Dxp(socket).run();
+                } catch (IOException | RuntimeException ex) {
+                    System.err.println(ex);
+                }
+            }
+        }
+    }
+
+}
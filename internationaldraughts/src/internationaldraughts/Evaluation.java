@@ -0,0 +1,146 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.BLACK;
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Board.WHITE;
+import static internationaldraughts.Position.CAPTURES;
+import static internationaldraughts.Position.COLUMN;
+import static internationaldraughts.Position.ROW;
+import static internationaldraughts.Position.getFrom;
+import static internationaldraughts.Position.getTo;
+
+/**
+ * Evaluation
+ *
+ * Static evaluation (MinMax) in 1/100 man, for the side to move (own - opponent).
+ * Incremental: a piece square table per color (material (man 100, king 300), tempo (rows advanced) and centre (columns)).
+ * A move changes the value by getValue (to - from (promotion: king - man) + the captured pieces), no board scan per node.
+ * Patterns (quiet leaves only, per man): formation (backed up by 2 own pieces), outpost (on the opponent half, backed up)
+ * and runaway (no opponent piece in the cone to the promotion row, more rows advanced is better).
+ *
+ * @author Naardeze
+ */
+
+class Evaluation {
+    final static int MAN = 100;
+    final static int KING = 300;
+
+    final private static int TEMPO = 2;
+    final private static int CENTRE = 1;
+    final private static int FORMATION = 3;
+    final private static int OUTPOST = 5;
+    final private static int RUNAWAY = 15;
+
+    //color, tile
+    final private static int[][] MAN_VALUE = new int[2][GRID * GRID / 2];
+    final private static int[] KING_VALUE = new int[GRID * GRID / 2];
+
+    //color, tile -> 2 tiles behind (1 on the side), tiles ahead up to the promotion row
+    final private static long[][] BACK = new long[2][GRID * GRID / 2];
+    final private static long[][] CONE = new long[2][GRID * GRID / 2];
+
+    //color -> rows advanced (0 on the own back row)
+    final private static int[][] ADVANCE = new int[2][GRID * GRID / 2];
+
+    static {
+        for (int i = 0; i < GRID * GRID / 2; i++) {
+            int row = i / COLUMN;
+            int centre = (GRID - 1 - Math.abs(2 * getColumn(i) - (GRID - 1))) / 2;
+
+            ADVANCE[WHITE][i] = ROW - row;
+            ADVANCE[BLACK][i] = row;
+
+            for (int color : new int[] {WHITE, BLACK}) {
+                MAN_VALUE[color][i] = MAN + TEMPO * ADVANCE[color][i] + CENTRE * centre;
+            }
+
+            KING_VALUE[i] = KING + CENTRE * centre;
+
+            for (int j = 0; j < GRID * GRID / 2; j++) {
+                int rows = j / COLUMN - row;
+                int columns = Math.abs(getColumn(j) - getColumn(i));
+
+                //white moves up (row - 1), black down (row + 1)
+                for (int color : new int[] {WHITE, BLACK}) {
+                    int ahead = color == WHITE ? -rows : rows;
+
+                    if (ahead == -1 && columns == 1) {
+                        BACK[color][i] ^= 1l << j;
+                    } else if (ahead > 0 && columns <= ahead) {
+                        CONE[color][i] ^= 1l << j;
+                    }
+                }
+            }
+        }
+    }
+
+    //column (0-9) of a tile
+    private static int getColumn(int index) {
+        return 2 * (index % COLUMN) + 1 - index / COLUMN % 2;
+    }
+
+    //table values of the pieces of color
+    private static int getTables(int color, long pieces, long kings) {
+        int value = 0;
+
+        for (; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
+            int index = Long.numberOfTrailingZeros(pieces);
+
+            value += (kings & Long.lowestOneBit(pieces)) != 0l ? KING_VALUE[index] : MAN_VALUE[color][index];
+        }
+
+        return value;
+    }
+
+    //incremental part (tables) of a position, for color (turn)
+    static int valueOf(int color, long turn, long opponent, long kings) {
+        return getTables(color, turn, kings) - getTables(1 - color, opponent, kings);
+    }
+
+    //change of the value by move (color, kings before move)
+    static int getValue(int color, long kings, long move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        int value;
+
+        if ((kings & 1l << from) != 0l) {
+            value = KING_VALUE[to] - KING_VALUE[from];
+        } else if (ADVANCE[color][to] == ROW) {
+            value = KING_VALUE[to] - MAN_VALUE[color][from];
+        } else {
+            value = MAN_VALUE[color][to] - MAN_VALUE[color][from];
+        }
+
+        return value + getTables(1 - color, move & CAPTURES, kings);
+    }
+
+    //formation, outposts and runaways of the men of color (turn)
+    private static int getManPattern(int color, long turn, long opponent, long kings) {
+        int value = 0;
+
+        for (long men = turn & ~kings; men != 0l; men ^= Long.lowestOneBit(men)) {
+            int index = Long.numberOfTrailingZeros(men);
+            long back = BACK[color][index];
+
+            if (back != 0l && (back & turn) == back) {
+                value += FORMATION;
+            }
+
+            if (ADVANCE[color][index] > ROW / 2 && (back & turn) != 0l) {
+                value += OUTPOST;
+            }
+
+            if ((CONE[color][index] & opponent) == 0l) {
+                value += RUNAWAY * ADVANCE[color][index];
+            }
+        }
+
+        return value;
+    }
+
+    //pattern part (leaf), for color (turn)
+    static int getPattern(int color, long turn, long opponent, long kings) {
+        return getManPattern(color, turn, opponent, kings) - getManPattern(1 - color, opponent, turn, kings);
+    }
+
+}
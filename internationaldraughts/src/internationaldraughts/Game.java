@@ -7,27 +7,38 @@ import static internationaldraughts.Board.COLOR;
 import static internationaldraughts.Board.GRID;
 import static internationaldraughts.Board.LEVEL;
 import static internationaldraughts.Board.MOVEABLE;
+import static internationaldraughts.Board.PONDER;
 import static internationaldraughts.Board.WHITE;
 import static internationaldraughts.Board.WINNER;
 import static internationaldraughts.Board.paintTile;
 import static internationaldraughts.Board.x;
 import static internationaldraughts.Board.y;
+import static internationaldraughts.Position.KING;
+import static internationaldraughts.Position.getCaptures;
+import static internationaldraughts.Position.getFrom;
+import static internationaldraughts.Position.getMove;
+import internationaldraughts.MinMax.Engine;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.awt.Cursor;
-import java.util.Stack;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * Game
@@ -35,15 +46,28 @@ import java.util.Stack;
  * New game with color -> loop and logic.
  * Pieces are 'w' (white) and 'b' (black). Lowercase for man and uppercase for king.
  * Board is char[50] (begin position), empty tile = '_'.
- * A move is an ArrayList of Integers: captures & to
+ * A move is a long (Position): captures (bit 0-49), from (bit 50-55) and to (bit 56-61).
  * 
  * enum Direction -> move in 4 directions (x, y)
+ * class Task -> cancellable ai work (search, ponder) on a bounded executor (daemon threads, shared by the games)
+ * class Frame -> animation step: board (shown) and marked tiles
  * 
- * -turn: pieces, moves and maxCapture -> game over or move (player (mouse) or ai (MinMax)).
- * -move: animation of the move: move (jumps), promotion, captures. return color of new turn
+ * -turn: position (legal moves (Position) and maxCapture) -> game over (no moves or draw) or move (player (mouse) or ai (MinMax)).
+ * The game is a History (moves and keys): repetitions and draw rules for the ai, undo plays back to the player's last turn.
+ * -animate: a move is committed at once (History), the ai search starts without waiting for the animation.
+ *  Its frames (jumps, promotion, captures) are queued and played by a Swing Timer (EDT only, the shown board is never
+ *  changed off the EDT). The player's turn (marks, input, ponder) and the end of the game start when the queue is played.
+ * -ponder: on the player's turn the ai searches the position after the expected move (table move).
+ *  hit (player plays it) -> that search continues for the rest of the time, miss (or undo) -> it is stopped.
+ * The ai (MinMax.Engine) is kept for the game (table and history between moves), cleared on undo.
+ * Undo and a new game (removal) cancel the running search and ponder (interrupt: MinMax stops within 1024 nodes)
+ * and wait until they ended, so no stale task turns the game. Queued frames are dropped.
  * 
- * ActionListener -> undo move. (player turn or gameover).
- * MouseListener (mousePressed) -> Player move -> piece + capture (2+) jumps + to.
+ * -paint: per tile a mark (hint, move) and a piece, only the tiles in the clip. update repaints the tiles that changed
+ *  (board or marks) since the last update, a move (frame) repaints its tiles and not the board.
+ * 
+ * ActionListener -> undo move. (player turn, gameover, or while the ai thinks or a move is animated).
+ * MouseListener (mousePressed) -> Player move -> piece + capture (2+) jumps + to (legal move).
  * 
  * @author Naardeze
  */
@@ -54,13 +78,8 @@ class Game extends Component implements ActionListener, MouseListener {
     
     final static String WB = W + "" + B;
     
-    final static char[] MAN = WB.toCharArray();
-    final static char[] KING = WB.toUpperCase().toCharArray();
-    
     final static char EMPTY = '_';
 
-    final static Image[][] PIECE = new Image[WB.length()][2];
-    
     final private static Color ORANGE = Color.orange;
     final private static Color[] MOVE = {Color.yellow, Color.green};
     
@@ -78,13 +97,6 @@ class Game extends Component implements ActionListener, MouseListener {
             this.y = y;
         }
 
-        boolean hasNext(int index) {
-            int x = x(index) + this.x;
-            int y = y(index) + this.y;
-
-            return x >= 0 && x < GRID && y >= 0 && y < GRID;
-        }
-
         int getNext(int index) {
             return (x(index) + x) / 2 + (y(index) + y) * (GRID / 2);
         }
@@ -107,27 +119,161 @@ class Game extends Component implements ActionListener, MouseListener {
         
     }
     
-    final private Stack<String> boards = new Stack();
+    //ai work of all games: search and ponder (at most 2 per game at a time)
+    final private static ExecutorService EXECUTOR = Executors.newFixedThreadPool(3, runnable -> {
+        Thread thread = new Thread(runnable, "ai");
+        
+        thread.setDaemon(true);
+        
+        return thread;
+    });
+    
+    private static class Task implements Runnable {
+        final private Runnable runnable;
+        final private CountDownLatch done = new CountDownLatch(1);
+        
+        private Thread thread = null;
+        private boolean isCancelled = false;
+        
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+        
+        static Task submit(Runnable runnable) {
+            Task task = new Task(runnable);
+            
+            EXECUTOR.execute(task);
+            
+            return task;
+        }
+        
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isCancelled) {
+                    done.countDown();
+                    return;
+                }
+                
+                thread = Thread.currentThread();
+            }
+            
+            try {
+                runnable.run();
+            } finally {
+                //the pool thread is reused: no interrupt left
+                synchronized (this) {
+                    thread = null;
+                    Thread.interrupted();
+                }
+                
+                done.countDown();
+            }
+        }
+        
+        //not started -> never runs, running -> interrupted
+        synchronized void cancel() {
+            isCancelled = true;
+            
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+        
+        //ended within ms (interrupt -> false, kept)
+        boolean await(long ms) {
+            try {
+                return done.await(ms, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                
+                return false;
+            }
+        }
+        
+        //until ended (an interrupt is kept)
+        void await() {
+            boolean isInterrupted = Thread.interrupted();
+            
+            while (done.getCount() > 0) {
+                try {
+                    done.await();
+                } catch (InterruptedException ex) {
+                    isInterrupted = true;
+                }
+            }
+            
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private static class Frame {
+        final char[] board;
+        final ArrayList<Integer> move;
+        
+        Frame(char[] board, ArrayList<Integer> move) {
+            this.board = board.clone();
+            this.move = new ArrayList(move);
+        }
+    }
+    
+    final private History history;
     
     final private int player;
     
+    //shown (EDT), after the queued frames
     private char[] board = new char[BOARD.tile.length];
+    private char[] last;
     private ArrayList<Integer> move = new ArrayList();
     
-    private HashSet<Integer>[] pieces = new HashSet[WB.length()];
-    private HashMap<Integer, HashSet<ArrayList<Integer>>> moves;
+    //board and marks of the last update (repainted)
+    private char[] shown;
+    private Color[] marked = new Color[BOARD.tile.length];
+    
+    final private static int DELAY = 360;
+    
+    final private ArrayDeque<Frame> frames = new ArrayDeque();
+    final private Timer timer = new Timer(DELAY, e -> frame());
+    
+    //+1 on cancel: a move of a cancelled search is not animated
+    private int generation = 0;
+    
+    //turn (color) that starts when the frames are played
+    private int next = NONE;
+    
+    private Position position;
+    private long[] moves;
     private int maxCapture;
     
     final private static int NONE = -1;
 
     private int selected;
     
+    final private Engine engine = new Engine();
+    
+    //search of the current turn, ponder (lock: EDT and the ai task, not the monitor of the component)
+    private volatile Task task = null;
+    private Task ponder = null;
+    private Position ponderPosition;
+    private long ponderStart;
+    private volatile long ponderMove;
+    
+    final private Object lock = new Object();
+    
     Game(int player) {
         this.player = player;
         
         Arrays.fill(board, 0, board.length / 2 - GRID / 2, B);
         Arrays.fill(board, board.length / 2 - GRID / 2, board.length / 2 + GRID / 2, EMPTY);
         Arrays.fill(board, board.length / 2 + GRID / 2, board.length, W);
+        
+        history = new History(new Position(board, WHITE));
+        last = board.clone();
+        shown = board.clone();
+        
+        timer.setInitialDelay(0);
 
         addComponentListener(new ComponentAdapter() {
             @Override
@@ -138,277 +284,349 @@ class Game extends Component implements ActionListener, MouseListener {
     }
     
     private void turn(int color) {
-        pieces[WHITE] = new HashSet();
-        pieces[BLACK] = new HashSet();
-        
-        for (int i = 0; i < board.length; i++) {
-            if (board[i] != EMPTY) {
-                pieces[WB.indexOf(Character.toLowerCase(board[i]))].add(i);
-            }
+        //player or game over: after the animation (timer, last frame)
+        if (timer.isRunning() && (color == player || history.isDraw() || history.getPosition().getMoves().length == 0)) {
+            next = color;
+            return;
         }
         
-        moves = new HashMap();
-        maxCapture = 0;
+        boolean isDraw = history.isDraw();
+        
+        position = history.getPosition();
+        moves = isDraw ? new long[0] : position.getMoves();
+        maxCapture = moves.length == 0 ? 0 : Long.bitCount(getCaptures(moves[0]));
         
         int opponent = 1 - color;
         
-        for (int from : pieces[color]) {
-            char piece = board[from];
-            
-            HashSet<ArrayList<Integer>> movesPiece = new HashSet();
-            int maxCapturePiece = maxCapture;
-            
-            for (Direction[] horizontal : new Direction[][] {{Direction.MIN_X_MIN_Y, Direction.MIN_X_PLUS_Y}, {Direction.PLUS_X_MIN_Y, Direction.PLUS_X_PLUS_Y}}) {
-                for (Direction vertical : horizontal) {
-                    if (vertical.hasNext(from)) {
-                        int step = vertical.getNext(from);
-                        
-                        if(board[step] == EMPTY && (piece == KING[color] || vertical == horizontal[color])) {
-                            if (maxCapturePiece == 0) {
-                                movesPiece.add(new ArrayList(Arrays.asList(new Integer[] {step})));
-                            }
-
-                            if (piece == KING[color] && vertical.hasNext(step)) {
-                                do {
-                                    step = vertical.getNext(step);
-
-                                    if (maxCapturePiece == 0 && board[step] == EMPTY) {
-                                        movesPiece.add(new ArrayList(Arrays.asList(new Integer[] {step})));
-                                    }
-                                } while (board[step] == EMPTY && vertical.hasNext(step));
-                            }
-                        }
-
-                        if (pieces[opponent].contains(step) && vertical.hasNext(step)) {
-                            int capture = step;
-
-                            step = vertical.getNext(capture);
-                            
-                            if (board[step] == EMPTY) {
-                                ArrayList<Integer> captureMove = new ArrayList(Arrays.asList(new Integer[] {capture, step}));
-
-                                if (piece == KING[color] && vertical.hasNext(step)) {
-                                    do {
-                                        step = vertical.getNext(step);
-
-                                        if (board[step] == EMPTY) {
-                                            captureMove.add(step);
-                                        }
-                                    } while (board[step] == EMPTY && vertical.hasNext(step));
-                                }
-
-                                ArrayList<ArrayList<Integer>> captureMoves = new ArrayList(Arrays.asList(new ArrayList[] {captureMove}));
-
-                                board[from] = EMPTY;
-
-                                do {
-                                    ArrayList<Integer> destination = captureMoves.remove(0);
-                                    ArrayList<Integer> captured = new ArrayList();
-
-                                    do {
-                                        captured.add(destination.remove(0));
-                                    } while (pieces[opponent].contains(destination.get(0)));
-
-                                    if (captured.size() > maxCapturePiece) {
-                                        movesPiece.clear();                                       
-                                        maxCapturePiece++;
-                                    }
-
-                                    for (int to : destination) {
-                                        if (captured.size() == maxCapturePiece) {
-                                            ArrayList<Integer> move = new ArrayList(captured);
-                                            
-                                            move.add(to);
-                                            movesPiece.add(move);
-                                        }
-
-                                        for (Direction diagonal : Direction.values()) {
-                                            if (diagonal.hasNext(to)) {
-                                                step = diagonal.getNext(to);                                                
-                                                
-                                                if (piece == KING[color] && !destination.contains(step)) {
-                                                    while (board[step] == EMPTY && diagonal.hasNext(step)) {
-                                                        step = diagonal.getNext(step);
-                                                    }
-                                                }
-
-                                                if (pieces[opponent].contains(step) && !captured.contains(step) && diagonal.hasNext(step)) {
-                                                    capture = step;
-                                                    step = diagonal.getNext(capture);
-
-                                                    if (board[step] == EMPTY) {
-                                                        captureMove = new ArrayList(captured);
-                                                        captureMove.addAll(Arrays.asList(new Integer[] {capture, step}));
-
-                                                        if (piece == KING[color] && diagonal.hasNext(step)) {
-                                                            do {
-                                                                step = diagonal.getNext(step);
-                                                                
-                                                                if (board[step] == EMPTY) {
-                                                                    captureMove.add(step);
-                                                                }
-                                                            } while (board[step] == EMPTY && diagonal.hasNext(step));
-                                                        }
-
-                                                        captureMoves.add(captureMove);
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                } while (!captureMoves.isEmpty());
-
-                                board[from] = piece;
-                            }
-                        }
-                    }
-                }
-            }
-            
-            if (!movesPiece.isEmpty()) {
-                if (maxCapturePiece > maxCapture) {
-                    moves.clear();
-                    maxCapture = maxCapturePiece;
-                }
-
-                moves.put(from, movesPiece);
-            }
-        }
-
         if (BOARD.isAncestorOf(this)) {
-            if (moves.isEmpty()) {
-                WINNER.setText(COLOR[opponent] + " is Winner");
+            if (moves.length == 0) {
+                stopPonder(null, 0l);
+                
+                WINNER.setText(isDraw ? "Draw" : COLOR[opponent] + " is Winner");
             } else if (color == player) {
                 selected = -1;
                 addMouseListener(this);
-                repaint();
+                update();
+                
+                ponder();
             } else {                
                 setCursor(new Cursor(Cursor.WAIT_CURSOR));
-                        
-                new Thread() {
-                    @Override
-                    public void run() {
-                        ArrayList<Integer> move = MinMax.getAIMove(color, board, pieces, moves, maxCapture, LEVEL.getValue());
                 
-                        setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
-                        turn(move(color, move.remove(0), move));
+                Position position = this.position;
+                History game = new History(history);
+                int generation = this.generation;
+                        
+                task = Task.submit(() -> {
+                    long aiMove = stopPonder(position, MinMax.getTime(LEVEL.getValue()));
+
+                    if (aiMove == 0l) {
+                        aiMove = engine.getAIMove(game, LEVEL.getValue());
+                    }
+
+                    //cancelled (undo, new game)
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
                     }
-                }.start();
+
+                    long move = aiMove;
+
+                    //the game (history) is changed on the EDT only
+                    SwingUtilities.invokeLater(() -> {
+                        if (this.generation == generation) {
+                            history.add(move);
+                            setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+                            animate(position, move);
+                            turn(opponent);
+                        }
+                    });
+                });
             }
             
-            if (moves.isEmpty() || color == player) {
+            if (moves.length == 0 || color == player || isUndoable()) {
                 ARROW.setEnabled(true);
             }
         }
     }
     
-    final private static int DELAY = 360;
+    private void ponder() {
+        long expected = engine.getPonderMove(position);
+        
+        if (PONDER.isSelected() && expected != 0l && this.position.play(expected).getMoves().length > 0) {
+            History game = new History(history);
+            
+            game.add(expected);
+            
+            synchronized (lock) {
+                ponderPosition = game.getPosition();
+                ponderStart = System.currentTimeMillis();
+                ponder = Task.submit(() -> ponderMove = engine.getAIMove(game, Long.MAX_VALUE, Long.MAX_VALUE));
+            }
+        }
+    }
     
-    private int move(int color, int from, ArrayList<Integer> move) {
-        this.move.clear();
+    //position (ai turn) -> ponder move (hit) or 0 (miss), the ponder is taken under the lock and awaited outside it
+    private long stopPonder(Position position, long time) {
+        Task ponder;
+        Position ponderPosition;
+        long ponderStart;
+        
+        synchronized (lock) {
+            if (this.ponder == null) {
+                return 0l;
+            }
+            
+            ponder = this.ponder;
+            ponderPosition = this.ponderPosition;
+            ponderStart = this.ponderStart;
+            
+            this.ponder = null;
+        }
+        
+        boolean isHit = position != null && position.key == ponderPosition.key;
+        
+        if (isHit) {
+            ponder.await(Math.max(1l, time - (System.currentTimeMillis() - ponderStart)));
+        }
         
+        ponder.cancel();
+        ponder.await();
+        
+        return isHit ? ponderMove : 0l;
+    }
+    
+    //frames of move (position before move), from the board after the queued frames
+    private void animate(Position position, long move) {
+        ArrayList<Integer> path = position.getPath(move);
+        ArrayList<Integer> tiles = new ArrayList();
+        int maxCapture = Long.bitCount(getCaptures(move));
+        int from = path.remove(0);
+        char[] board = last.clone();
         char piece = board[from];
         
-        for (int i = 1; i < maxCapture; from = this.move.remove(i++)) {
-            int capture = move.remove(0);
+        for (int i = 1; i < maxCapture; from = tiles.remove(i++)) {
+            int capture = path.remove(0);
             Direction direction = Direction.getDirection(from, capture);
             int step = direction.getNext(capture);
 
-            while (Math.abs(x(move.get(0)) - x(step)) != Math.abs(y(move.get(0)) - y(step))) {
+            while (Math.abs(x(path.get(0)) - x(step)) != Math.abs(y(path.get(0)) - y(step))) {
                 step = direction.getNext(step);
             }
 
-            this.move.addAll(Arrays.asList(new Integer[] {capture, step}));
+            tiles.addAll(Arrays.asList(new Integer[] {capture, step}));
 
             board[from] = EMPTY;
             board[step] = piece;
 
-            repaint();
-
-            try {
-                Thread.sleep(DELAY);
-            } catch (Exception ex) {}
+            frames.add(new Frame(board, tiles));
         }
         
-        this.move.addAll(move);
+        tiles.addAll(path);
         
-        int to = this.move.get(maxCapture);
+        int to = tiles.get(maxCapture);
         
         if ((piece == W && to < GRID / 2) || (piece == B && to >= board.length - GRID / 2)) {
-            piece = KING[color];
+            piece = KING[position.color];
         }
         
         board[from] = EMPTY;
         board[to] = piece;
         
-        repaint();
-        
-        try {
-            Thread.sleep(DELAY);
-        } catch (Exception ex) {}
+        frames.add(new Frame(board, tiles));
         
         for (int i = 0; i < maxCapture; i++) {
-            board[this.move.remove(0)] = EMPTY;
+            board[tiles.remove(0)] = EMPTY;
             
-            repaint();
-        
-            try {
-                Thread.sleep(DELAY);
-            } catch (Exception ex) {}
+            frames.add(new Frame(board, tiles));
         }
         
-        return 1 - color;
+        last = board;
+        
+        if (!timer.isRunning()) {
+            timer.start();
+        }
     }
     
-    @Override
-    public void paint(Graphics g) {
-        if (ARROW.isEnabled() && !moves.isEmpty()) {
-            g.setColor(ORANGE);
+    //timer: next frame (or stop)
+    private void frame() {
+        Frame frame = frames.poll();
+        
+        if (frame == null) {
+            timer.stop();
+            
+            if (next != NONE) {
+                int color = next;
+                
+                next = NONE;
+                turn(color);
+            }
+        } else {
+            board = frame.board;
+            move = frame.move;
             
+            update();
+        }
+    }
+    
+    //mark per tile: hint (player's turn), move or null
+    private Color[] getMarks() {
+        Color[] mark = new Color[board.length];
+        
+        if (position != null && position.color == player && moves.length > 0) {
             if (selected != NONE) {
-                paintTile(g, BOARD.tile[selected]);
+                mark[selected] = ORANGE;
             } else if (MOVEABLE.isSelected()) {
-                moves.keySet().forEach(hint -> paintTile(g, BOARD.tile[hint]));
+                for (long hint : moves) {
+                    mark[getFrom(hint)] = ORANGE;
+                }
             }
         }
         
         for (int index : move) {
-            g.setColor(MOVE[(move.indexOf(index) + 1) / move.size()]);            
-            paintTile(g, BOARD.tile[index]);
+            mark[index] = MOVE[(move.indexOf(index) + 1) / move.size()];
         }
         
+        return mark;
+    }
+    
+    //repaint of the changed tiles (union)
+    void update() {
+        Color[] mark = getMarks();
+        Rectangle dirty = null;
+        
         for (int i = 0; i < board.length; i++) {
-            if (board[i] != EMPTY) {
-                g.drawImage(PIECE[WB.indexOf(Character.toLowerCase(board[i]))][(Character.toLowerCase(board[i]) + "" + Character.toUpperCase(board[i])).indexOf(board[i])], BOARD.tile[i].x, BOARD.tile[i].y, this);
+            if (board[i] != shown[i] || mark[i] != marked[i]) {
+                dirty = dirty == null ? new Rectangle(BOARD.tile[i]) : dirty.union(BOARD.tile[i]);
             }
         }
+        
+        shown = board.clone();
+        marked = mark;
+        
+        if (dirty != null) {
+            repaint(dirty.x, dirty.y, dirty.width, dirty.height);
+        }
+    }
+    
+    //tiles in the clip: mark and piece (sprite)
+    static void paintTiles(Graphics g, Rectangle[] tile, char[] board, Color[] mark, Image[][] piece) {
+        Rectangle clip = g.getClipBounds();
+        
+        for (int i = 0; i < board.length; i++) {
+            if (clip == null || clip.intersects(tile[i])) {
+                if (mark[i] != null) {
+                    g.setColor(mark[i]);
+                    paintTile(g, tile[i]);
+                }
+                
+                if (board[i] != EMPTY && piece[WB.indexOf(Character.toLowerCase(board[i]))][Character.isUpperCase(board[i]) ? 1 : 0] != null) {
+                    g.drawImage(piece[WB.indexOf(Character.toLowerCase(board[i]))][Character.isUpperCase(board[i]) ? 1 : 0], tile[i].x, tile[i].y, null);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void paint(Graphics g) {
+        paintTiles(g, BOARD.tile, board, getMarks(), BOARD.piece);
+    }
+
+    //the task of the turn (and a task it started) and ponder: cancelled and ended, animation dropped
+    private void cancel() {
+        for (Task task = this.task; task != null; task = task == this.task ? null : this.task) {
+            task.cancel();
+            task.await();
+        }
+        
+        stopPonder(null, 0l);
+        setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+        
+        generation++;
+        frames.clear();
+        timer.stop();
+        next = NONE;
+    }
+    
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        
+        cancel();
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        if (moves.isEmpty()) {
+        cancel();
+        engine.clear();
+        
+        if (moves.length == 0) {
             WINNER.setText("");
         } else {
             removeMouseListener(this);
         }
         
         move.clear();
-        board = boards.pop().toCharArray();
+        
+        //back to the player's last turn
+        do {
+            history.undo();
+        } while (history.getPosition().color != player);
+        
+        board = history.getPosition().getBoard();
+        last = board.clone();
+        
+        update();
         
         ARROW.setEnabled(false);
 
-        if (boards.isEmpty()) {
+        if (!isUndoable()) {
             ARROW.setVisible(false);
         }
         
         turn(player);
     }
 
+    //a player move is played (white starts)
+    private boolean isUndoable() {
+        return history.size() > (player == WHITE ? 0 : 1);
+    }
+
+    private boolean isMoveable(int index) {
+        for (long move : moves) {
+            if (getFrom(move) == index) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    //captures & to -> legal move or 0
+    private long getLegal(int from, ArrayList<Integer> move) {
+        long captures = 0l;
+        
+        for (int capture : move.subList(0, maxCapture)) {
+            captures ^= 1l << capture;
+        }
+        
+        for (long legal : moves) {
+            if (legal == getMove(from, captures, move.get(maxCapture))) {
+                return legal;
+            }
+        }
+        
+        return 0l;
+    }
+    
     @Override
     public void mouseClicked(MouseEvent e) {}
 
     @Override
     public void mousePressed(MouseEvent e) {
+        //the animation is behind
+        if (!frames.isEmpty()) {
+            return;
+        }
+        
         for (int pressed = 0; pressed < BOARD.tile.length; pressed++) {
             if (BOARD.tile[pressed].contains(e.getPoint())) {
                 if (selected != NONE && (board[pressed] == EMPTY || pressed == selected)) {
@@ -426,7 +644,7 @@ class Game extends Component implements ActionListener, MouseListener {
                             }
                         }
 
-                        if (pieces[1 - player].contains(step) && !move.contains(step)) {
+                        if ((position.opponent & 1l << step) != 0l && !move.contains(step)) {
                             move.add(step);
                             step = direction.getNext(step);
 
@@ -443,40 +661,40 @@ class Game extends Component implements ActionListener, MouseListener {
                             move.add(pressed);
 
                             if (move.indexOf(pressed) == maxCapture) {
-                                removeMouseListener(this);
-
-                                ARROW.setEnabled(false);
+                                long legal = getLegal(selected, move);
                                 
-                                if (boards.isEmpty()) {
-                                    ARROW.setVisible(true);
+                                if (legal == 0l) {
+                                    break;
                                 }
                                 
-                                boards.add(String.valueOf(board));
-
-                                new Thread() {
-                                    @Override
-                                    public void run() {
-                                        turn(move(player, selected, move));
-                                    }
-                                }.start();
+                                removeMouseListener(this);
+                                
+                                history.add(legal);
+
+                                //undo stays possible (cancels the animation or the search)
+                                ARROW.setVisible(true);
+                                ARROW.setEnabled(true);
+
+                                animate(position, legal);
+                                turn(1 - player);
                             } else {
                                 this.move = move;
 
-                                repaint();
+                                update();
                             }
                         }
                     } 
                 } else if (board[pressed] != EMPTY) {
                     move.clear();
                     
-                    if (moves.containsKey(pressed)) {
+                    if (isMoveable(pressed)) {
                         selected = pressed;
                         move.add(selected);
                     } else if (selected != NONE) {
                         selected = NONE;
                     }
                     
-                    repaint();
+                    update();
                 }
                 
                 break;
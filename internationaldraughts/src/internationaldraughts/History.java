@@ -0,0 +1,169 @@
+package internationaldraughts;
+
+import static internationaldraughts.Position.getCaptures;
+import static internationaldraughts.Position.getFrom;
+import static internationaldraughts.Position.getKings;
+import static internationaldraughts.Position.getTo;
+import java.util.Arrays;
+
+/**
+ * History
+ *
+ * Moves of a game from a start position: packed moves (Position move longs) and the zobrist key per ply (incremental),
+ * no board copies. Undo replays the moves from the start.
+ * Per ply 2 counters for the draw rules: plies since the last man move or capture (reversible) and plies since the last
+ * capture or promotion (endgame).
+ * Draws (FMJD): 3 fold repetition (same key since the last man move or capture, hash compare only),
+ * 25 moves (50 plies) with only king moves and no capture,
+ * 3 pieces (1 king or more) against 1 king: 16 moves (32 plies), 2 pieces or less (1 king or more) against 1 king: 5 moves (10 plies).
+ * The endgame counter restarts on captures and promotions.
+ * MinMax gets the keys (repetition) and counters of the game before the root, and keeps them along the search path.
+ *
+ * @author Naardeze
+ */
+
+class History {
+    final static int REPETITION = 3;
+    final static int KING_MOVES = 50;
+    final static int ENDGAME = 32;
+    final static int SHORT_ENDGAME = 10;
+
+    final private Position start;
+    private Position position;
+
+    //move per ply, key, reversible and endgame per position (ply 0 = start)
+    private long[] move = new long[64];
+    private long[] key = new long[65];
+    private int[] reversible = new int[65];
+    private int[] endgame = new int[65];
+    private int size = 0;
+
+    History(Position start) {
+        this.start = start;
+
+        position = start;
+        key[0] = start.key;
+    }
+
+    History(History history) {
+        start = history.start;
+        position = history.position;
+        move = history.move.clone();
+        key = history.key.clone();
+        reversible = history.reversible.clone();
+        endgame = history.endgame.clone();
+        size = history.size;
+    }
+
+    Position getPosition() {
+        return position;
+    }
+
+    //moves played
+    int size() {
+        return size;
+    }
+
+    long getMove(int ply) {
+        return move[ply];
+    }
+
+    //key of the position before move ply (size: current position)
+    long getKey(int ply) {
+        return key[ply];
+    }
+
+    int getReversible() {
+        return reversible[size];
+    }
+
+    int getEndgame() {
+        return endgame[size];
+    }
+
+    void add(long move) {
+        int from = getFrom(move);
+        boolean isKing = (position.kings >>> from & 1l) == 1l;
+        boolean isPromotion = !isKing && (getKings(position.color, position.kings, move) >>> getTo(move) & 1l) == 1l;
+
+        if (size == this.move.length) {
+            this.move = Arrays.copyOf(this.move, 2 * size);
+            key = Arrays.copyOf(key, 2 * size + 1);
+            reversible = Arrays.copyOf(reversible, 2 * size + 1);
+            endgame = Arrays.copyOf(endgame, 2 * size + 1);
+        }
+
+        position = position.play(move);
+
+        this.move[size] = move;
+        key[size + 1] = position.key;
+        reversible[size + 1] = isKing && getCaptures(move) == 0l ? reversible[size] + 1 : 0;
+        endgame[size + 1] = getCaptures(move) != 0l || isPromotion ? 0 : endgame[size] + 1;
+        size++;
+    }
+
+    //last move back (replay from the start)
+    void undo() {
+        position = start;
+
+        for (int ply = 0; ply < size - 1; ply++) {
+            position = position.play(move[ply]);
+        }
+
+        size--;
+    }
+
+    //times the current position occurred (since the last man move or capture)
+    int getRepetition() {
+        int count = 1;
+
+        for (int ply = size - 2; ply >= size - reversible[size]; ply -= 2) {
+            if (key[ply] == key[size]) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    boolean isDraw() {
+        return getRepetition() >= REPETITION || isDraw(reversible[size], endgame[size], position.turn, position.opponent, position.kings);
+    }
+
+    //25 move rule and endgames against a lone king
+    static boolean isDraw(int reversible, int endgame, long turn, long opponent, long kings) {
+        if (reversible >= KING_MOVES) {
+            return true;
+        } else if (endgame < SHORT_ENDGAME) {
+            return false;
+        }
+
+        return endgame >= getEndgame(turn, opponent, kings);
+    }
+
+    //plies of the lone king rule (ENDGAME or SHORT_ENDGAME), no lone king -> Integer.MAX_VALUE
+    private static int getEndgame(long turn, long opponent, long kings) {
+        if (Long.bitCount(turn | opponent) <= 4) {
+            long lone = Long.bitCount(turn) == 1 ? turn : opponent;
+            long strong = lone == turn ? opponent : turn;
+
+            if (Long.bitCount(lone) == 1 && (lone & kings) != 0l && (strong & kings) != 0l) {
+                return Long.bitCount(strong) == 3 ? ENDGAME : SHORT_ENDGAME;
+            }
+        }
+
+        return Integer.MAX_VALUE;
+    }
+
+    //plies left before a draw rule ends the game if no capture or promotion restarts it (lone king, 25 moves with kings only)
+    static int getPlies(int reversible, int endgame, long turn, long opponent, long kings) {
+        int plies = getEndgame(turn, opponent, kings) - endgame;
+
+        if (((turn | opponent) & ~kings) == 0l) {
+            plies = Math.min(plies, KING_MOVES - reversible);
+        }
+
+        return plies;
+    }
+
+}
@@ -0,0 +1,331 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Game.EMPTY;
+import static internationaldraughts.Game.WB;
+import internationaldraughts.MinMax.Engine;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Hub (main)
+ *
+ * Headless engine (no Swing, no AWT) for GUIs and match managers: Hub protocol (version 2) over stdin/stdout.
+ * A line is a command followed by words and name=value pairs (value "with spaces" in quotes).
+ * The search (MinMax) runs on its own thread, stop (or a new position) interrupts it, done returns the move.
+ * The engine (table and history) is kept between moves, new-game clears it.
+ * The game (History: start position + moves) gives the search the repetitions and draw rules, pos without pos= continues it.
+ * Times are in seconds, depth in plies (2 plies = 1 MinMax depth).
+ *
+ * hub -> id, param (threads, hash, quiescence, statistics) and wait
+ * set-param name=threads|hash|quiescence value=n (quiescence = max capture plies after the search depth)
+ * set-param name=statistics value=true|false -> search statistics line per move (stderr)
+ * init -> ready, ping -> pong
+ * new-game [pos=p], pos [pos=p] [moves="32-28 19-23..."] (p = side + 50 tiles (wbWBe) or FEN "W:W31-50:B1-20")
+ * level [moves=n] [time=t] [inc=t] | move-time=t | depth=n | nodes=n | infinite, time left=t
+ * go think|ponder|analyze -> info depth= score= (1/100 man) nodes= time= nps= pv= (per depth) and done move= [ponder=]
+ * ponder-hit -> ponder continues as think, stop, quit
+ *
+ * java -cp internationaldraughts.jar internationaldraughts.Hub
+ *
+ * @author Naardeze
+ */
+
+class Hub {
+    final static String NAME = "InternationalDraughts";
+    final static String AUTHOR = "Naardeze";
+
+    final private static int MAX_THREADS = 64;
+    final private static int MAX_HASH = 4096;
+    final private static int MAX_QUIESCENCE = 64;
+
+    private History game = new History(new Position(Position.START));
+
+    private long moveTime = 0l;
+    private long time = 0l;
+    private long increment = 0l;
+    private int moves = 0;
+    private int depth = Integer.MAX_VALUE;
+    private long nodes = Long.MAX_VALUE;
+    private boolean isInfinite = true;
+
+    final private Engine engine = new Engine();
+    
+    private Thread search = null;
+    private boolean isStatistics = false;
+
+    private synchronized void send(String line) {
+        System.out.println(line);
+        System.out.flush();
+    }
+
+    //command word name=value name="value" (after the command)
+    static HashMap<String, String> getArguments(String line) {
+        HashMap<String, String> arguments = new HashMap();
+        int i = line.trim().indexOf(' ') + 1;
+
+        line = line.trim();
+
+        if (i == 0) {
+            return arguments;
+        }
+
+        while (i < line.length()) {
+            if (line.charAt(i) == ' ') {
+                i++;
+                continue;
+            }
+
+            int end = i;
+
+            while (end < line.length() && line.charAt(end) != ' ' && line.charAt(end) != '=') {
+                end++;
+            }
+
+            String name = line.substring(i, end);
+            String value = "";
+
+            if (end < line.length() && line.charAt(end) == '=') {
+                i = ++end;
+
+                if (end < line.length() && line.charAt(end) == '"') {
+                    end = line.indexOf('"', ++i);
+
+                    if (end == -1) {
+                        end = line.length();
+                    }
+
+                    value = line.substring(i, end++);
+                } else {
+                    while (end < line.length() && line.charAt(end) != ' ') {
+                        end++;
+                    }
+
+                    value = line.substring(i, end);
+                }
+            }
+
+            arguments.putIfAbsent(name, value);
+            i = end;
+        }
+
+        return arguments;
+    }
+
+    //side + 50 tiles (wbWBe) or FEN
+    static Position getPosition(String pos) {
+        if (pos.indexOf(':') == -1) {
+            if (pos.length() != 1 + GRID * GRID / 2 || WB.toUpperCase().indexOf(pos.charAt(0)) == -1 || !pos.substring(1).matches("[wbWBe]*")) {
+                throw new IllegalArgumentException(pos);
+            }
+
+            return new Position(pos.substring(1).replace('e', EMPTY).toCharArray(), WB.toUpperCase().indexOf(pos.charAt(0)));
+        }
+
+        return new Position(pos);
+    }
+
+    //side + 50 tiles (wbWBe)
+    static String getPos(Position position) {
+        return WB.toUpperCase().charAt(position.color) + new String(position.getBoard()).replace(EMPTY, 'e');
+    }
+
+    //time (ms) for the next move
+    private long getTime() {
+        if (isInfinite) {
+            return Long.MAX_VALUE;
+        } else if (moveTime > 0l) {
+            return moveTime;
+        } else if (time > 0l) {
+            return MinMax.getTime(time, increment, moves);
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    private static long getMillis(String seconds) {
+        return (long) (Double.parseDouble(seconds) * 1000);
+    }
+
+    private void stop() {
+        if (search != null) {
+            search.interrupt();
+
+            try {
+                search.join();
+            } catch (InterruptedException ex) {}
+
+            search = null;
+        }
+    }
+
+    private void go(History game, long time) {
+        Position position = game.getPosition();
+        long start = System.currentTimeMillis();
+        int depth = Math.max(1, this.depth / 2);
+        long nodes = this.nodes;
+
+        search = new Thread() {
+            @Override
+            public void run() {
+                if (position.getMoves().length == 0) {
+                    send("done");
+                    return;
+                }
+
+                long[][] last = {{}};
+                long move = engine.getAIMove(game, time, nodes, depth, (finished, score, pv, statistics) -> {
+                    long ms = Math.max(1l, System.currentTimeMillis() - start);
+                    long count = statistics.nodes;
+                    String line = "";
+
+                    for (long best : pv) {
+                        line += (line.isEmpty() ? "" : " ") + Position.toString(best);
+                    }
+
+                    last[0] = pv;
+
+                    send(String.format(Locale.ROOT, "info depth=%d score=%d nodes=%d time=%.3f nps=%d pv=\"%s\"", 2 * finished, score, count, ms / 1000.0, count * 1000 / ms, line));
+                });
+
+                if (isStatistics) {
+                    System.err.println("statistics " + engine.getStatistics());
+                }
+                
+                send("done move=" + Position.toString(move) + (last[0].length > 1 && last[0][0] == move ? " ponder=" + Position.toString(last[0][1]) : ""));
+            }
+        };
+        search.start();
+    }
+
+    //a ponder (infinite) search becomes a think: interrupted when the time is spent
+    private void ponderHit() {
+        Thread ponder = search;
+        long time = getTime();
+
+        if (ponder != null && time != Long.MAX_VALUE) {
+            Thread hit = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        ponder.join(time);
+                    } catch (InterruptedException ex) {}
+
+                    ponder.interrupt();
+                }
+            };
+            hit.setDaemon(true);
+            hit.start();
+        }
+    }
+
+    private boolean command(String line) {
+        HashMap<String, String> arguments = getArguments(line);
+        String command = line.trim().split(" ")[0];
+
+        switch (command) {
+            case "hub":
+                send("id name=" + NAME + " author=" + AUTHOR);
+                send("param name=threads value=" + MinMax.threads + " type=int min=1 max=" + MAX_THREADS);
+                send("param name=hash value=" + MinMax.HASH + " type=int min=1 max=" + MAX_HASH);
+                send("param name=quiescence value=" + MinMax.quiescence + " type=int min=0 max=" + MAX_QUIESCENCE);
+                send("param name=statistics value=" + isStatistics + " type=bool");
+                send("wait");
+                break;
+            case "set-param":
+                if (arguments.get("name").equals("threads")) {
+                    MinMax.threads = Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(arguments.get("value"))));
+                } else if (arguments.get("name").equals("hash")) {
+                    engine.setHash(Math.max(1, Math.min(MAX_HASH, Integer.parseInt(arguments.get("value")))));
+                } else if (arguments.get("name").equals("quiescence")) {
+                    MinMax.quiescence = Math.max(0, Math.min(MAX_QUIESCENCE, Integer.parseInt(arguments.get("value"))));
+                } else if (arguments.get("name").equals("statistics")) {
+                    isStatistics = Boolean.parseBoolean(arguments.get("value"));
+                } else {
+                    throw new IllegalArgumentException(arguments.get("name"));
+                }
+                break;
+            case "init":
+                send("ready");
+                break;
+            case "ping":
+                send("pong");
+                break;
+            case "new-game":
+            case "pos":
+                stop();
+
+                History game = arguments.containsKey("pos") ? new History(getPosition(arguments.get("pos"))) : command.equals("pos") ? new History(this.game) : new History(new Position(Position.START));
+
+                if (arguments.containsKey("moves")) {
+                    for (String move : arguments.get("moves").trim().split(" +")) {
+                        if (!move.isEmpty()) {
+                            game.add(game.getPosition().getMove(move));
+                        }
+                    }
+                }
+
+                if (command.equals("new-game")) {
+                    engine.clear();
+                }
+                
+                this.game = game;
+                break;
+            case "level":
+                moveTime = arguments.containsKey("move-time") ? getMillis(arguments.get("move-time")) : 0l;
+                time = arguments.containsKey("time") ? getMillis(arguments.get("time")) : 0l;
+                increment = arguments.containsKey("inc") ? getMillis(arguments.get("inc")) : 0l;
+                moves = arguments.containsKey("moves") ? Integer.parseInt(arguments.get("moves")) : 0;
+                depth = arguments.containsKey("depth") ? Integer.parseInt(arguments.get("depth")) : Integer.MAX_VALUE;
+                nodes = arguments.containsKey("nodes") ? Long.parseLong(arguments.get("nodes")) : Long.MAX_VALUE;
+                isInfinite = arguments.containsKey("infinite") || moveTime + time == 0l;
+                break;
+            case "time":
+                if (arguments.containsKey("left")) {
+                    time = getMillis(arguments.get("left"));
+                    isInfinite = false;
+                }
+                break;
+            case "go":
+                stop();
+                go(this.game, arguments.containsKey("think") ? getTime() : Long.MAX_VALUE);
+                break;
+            case "ponder-hit":
+                ponderHit();
+                break;
+            case "stop":
+                stop();
+                break;
+            case "quit":
+                stop();
+                return false;
+            case "":
+                break;
+            default:
+                throw new IllegalArgumentException(command);
+        }
+
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Hub hub = new Hub();
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            try {
+                if (!hub.command(line)) {
+                    break;
+                }
+            } catch (RuntimeException ex) {
+                hub.send("error message=\"" + ex + "\"");
+            }
+        }
+
+        hub.stop();
+    }
+
+}
@@ -0,0 +1,406 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.BLACK;
+import static internationaldraughts.Board.WHITE;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Match (main)
+ *
+ * Headless engine against engine match (self-play or old against new build), games played in parallel.
+ * An engine is a Hub process (1 per side per worker, reused), default the engine of this jar.
+ * Every opening (file: 1 FEN or Hub position per line, # comment) is played twice, colors swapped.
+ * A game ends when a side has no moves (or fails: crash, illegal move, time), on a draw (History: 3 fold repetition,
+ * 25 move rule, lone king endgames) or the ply limit (draw).
+ * The engine to move gets the start position and the moves played (pos pos= moves=), so it searches with the repetitions
+ * and draw rules the game is judged by.
+ * Live statistics (engine 1): wins, losses, draws, elo (95%) and SPRT log likelihood ratio (stops when accepted or rejected).
+ *
+ * -engine1 "java -cp new.jar internationaldraughts.Hub" -engine2 "java -cp old.jar internationaldraughts.Hub"
+ * -level "move-time=0.1" | -level1 "nodes=100000" -level2 "time=60 inc=0.5" (Hub level per side, time -> clock per game)
+ * -openings file -games 1000 -concurrency cores -plies 300 -threads 1 -hash 16 -pdn file -sprt elo0,elo1 (alfa = beta = 0.05)
+ *
+ * class Engine -> Hub process
+ *
+ * @author Naardeze
+ */
+
+class Match {
+    final private static String[] RESULT = {"2-0", "0-2", "1-1"};
+    final private static int DRAW = 2;
+
+    final private static double ALFA = 0.05;
+    final private static double BETA = 0.05;
+
+    static class Engine {
+        final private Process process;
+        final private BufferedReader in;
+        final private PrintWriter out;
+
+        String name = "";
+
+        Engine(String command, int threads, int hash) throws IOException {
+            process = new ProcessBuilder(command.trim().split(" +")).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            out = new PrintWriter(process.getOutputStream(), true);
+
+            send("hub");
+
+            for (String line = read("wait"); !line.startsWith("wait"); line = read("wait")) {}
+
+            send("set-param name=threads value=" + threads);
+            send("set-param name=hash value=" + hash);
+            send("init");
+            read("ready");
+        }
+
+        void send(String line) {
+            out.println(line);
+        }
+
+        //next line starting with prefix (id lines are kept)
+        String read(String prefix) throws IOException {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.startsWith("id ")) {
+                    name = Hub.getArguments(line).getOrDefault("name", name);
+                }
+
+                if (line.startsWith(prefix) || line.startsWith("id ")) {
+                    return line;
+                }
+            }
+
+            throw new IOException("engine stopped");
+        }
+
+        void quit() {
+            send("quit");
+            process.destroy();
+        }
+    }
+
+    final private String[] command = {null, null};
+    final private String[] level = {"move-time=0.1", "move-time=0.1"};
+    final private ArrayList<String> openings = new ArrayList();
+
+    private int games = 100;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private int plies = 300;
+    private int threads = 1;
+    private int hash = 16;
+    private PrintWriter pdn = null;
+    private double[] sprt = null;
+
+    //engine 1: wins, losses, draws
+    final private int[] score = new int[3];
+    final private AtomicInteger next = new AtomicInteger();
+    private volatile boolean isDecided = false;
+
+    private Match(String[] args) throws IOException {
+        String self = new File(System.getProperty("java.home"), "bin/java") + " -cp " + System.getProperty("java.class.path") + " " + Hub.class.getName();
+
+        Arrays.fill(command, self);
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-engine1":
+                    command[0] = args[i + 1];
+                    break;
+                case "-engine2":
+                    command[1] = args[i + 1];
+                    break;
+                case "-level":
+                    Arrays.fill(level, args[i + 1]);
+                    break;
+                case "-level1":
+                    level[0] = args[i + 1];
+                    break;
+                case "-level2":
+                    level[1] = args[i + 1];
+                    break;
+                case "-openings":
+                    for (String line : Files.readAllLines(Paths.get(args[i + 1]))) {
+                        if (!line.trim().isEmpty() && !line.trim().startsWith("#")) {
+                            Hub.getPosition(line.trim());
+                            openings.add(line.trim());
+                        }
+                    }
+                    break;
+                case "-games":
+                    games = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-concurrency":
+                    concurrency = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-plies":
+                    plies = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-hash":
+                    hash = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-pdn":
+                    pdn = new PrintWriter(new FileWriter(args[i + 1]), true);
+                    break;
+                case "-sprt":
+                    sprt = Arrays.stream(args[i + 1].split(",")).mapToDouble(Double::parseDouble).toArray();
+                    break;
+                default:
+                    throw new IllegalArgumentException(args[i]);
+            }
+        }
+
+        if (openings.isEmpty()) {
+            openings.add(Position.START);
+        }
+    }
+
+    static double getElo(double score) {
+        return -400 * Math.log10(1 / Math.max(1e-6, Math.min(1 - 1e-6, score)) - 1);
+    }
+
+    //normal approximation of the trinomial (win, draw, loss) log likelihood ratio of elo1 against elo0
+    static double getLLR(int wins, int losses, int draws, double elo0, double elo1) {
+        double games = wins + losses + draws;
+
+        if (games == 0) {
+            return 0;
+        }
+
+        double score = (wins + draws / 2.0) / games;
+        double variance = (wins + draws / 4.0) / games - score * score;
+
+        if (variance <= 0) {
+            return 0;
+        }
+
+        double score0 = 1 / (1 + Math.pow(10, -elo0 / 400));
+        double score1 = 1 / (1 + Math.pow(10, -elo1 / 400));
+
+        return (score1 - score0) * (2 * score - score0 - score1) / (2 * variance / games);
+    }
+
+    //from-to or fromxto
+    private static String toPDN(long move) {
+        return (Position.getFrom(move) + 1) + (Position.getCaptures(move) == 0l ? "-" : "x") + (Position.getTo(move) + 1);
+    }
+
+    //engines[color], clock (ms) per color -> winner (color) or draw
+    private int play(Engine[] engines, String[] level, Position position, ArrayList<String> moves) throws IOException {
+        History game = new History(position);
+        String start = Hub.getPos(position);
+        StringBuilder played = new StringBuilder();
+        long[] left = new long[engines.length];
+        long[] increment = new long[engines.length];
+
+        for (int color : new int[] {WHITE, BLACK}) {
+            HashMap<String, String> arguments = Hub.getArguments("level " + level[color]);
+
+            left[color] = arguments.containsKey("time") ? (long) (Double.parseDouble(arguments.get("time")) * 1000) : -1l;
+            increment[color] = arguments.containsKey("inc") ? (long) (Double.parseDouble(arguments.get("inc")) * 1000) : 0l;
+
+            engines[color].send("new-game");
+            engines[color].send("level " + level[color]);
+        }
+
+        for (int ply = 0; ply < plies; ply++) {
+            long[] legal = position.getMoves();
+            int color = position.color;
+
+            if (legal.length == 0) {
+                return 1 - color;
+            } else if (game.isDraw()) {
+                return DRAW;
+            }
+
+            Engine engine = engines[color];
+
+            if (left[color] != -1l) {
+                engine.send(String.format(Locale.ROOT, "time left=%.3f", left[color] / 1000.0));
+            }
+
+            //start position and the game so far: the engine searches with the repetitions and draw rules of the arbiter
+            engine.send("pos pos=" + start + " moves=\"" + played + "\"");
+            engine.send("go think");
+
+            long time = System.currentTimeMillis();
+            String done = engine.read("done");
+
+            while (!done.startsWith("done")) {
+                done = engine.read("done");
+            }
+
+            if (left[color] != -1l) {
+                left[color] -= System.currentTimeMillis() - time;
+
+                if (left[color] < 0l) {
+                    return 1 - color;
+                }
+
+                left[color] += increment[color];
+            }
+
+            long move;
+
+            try {
+                move = position.getMove(Hub.getArguments(done).getOrDefault("move", ""));
+            } catch (RuntimeException ex) {
+                return 1 - color;
+            }
+
+            moves.add(toPDN(move));
+            played.append(played.length() == 0 ? "" : " ").append(Position.toString(move));
+            game.add(move);
+            position = game.getPosition();
+        }
+
+        return DRAW;
+    }
+
+    private synchronized void result(int game, Engine[] engines, String opening, ArrayList<String> moves, int result, int first) {
+        //engine 1 result
+        if (result == DRAW) {
+            score[2]++;
+        } else {
+            score[result == first ? 0 : 1]++;
+        }
+
+        int count = score[0] + score[1] + score[2];
+        double mean = (score[0] + score[2] / 2.0) / count;
+        double error = 1.96 * Math.sqrt(Math.max(0, (score[0] + score[2] / 4.0) / count - mean * mean) / count);
+        String line = String.format(Locale.ROOT, "game %d: %s - %s %s | +%d -%d =%d | elo %.1f [%.1f, %.1f]", game + 1, engines[WHITE].name, engines[BLACK].name, RESULT[result], score[0], score[1], score[2], getElo(mean), getElo(mean - error), getElo(mean + error));
+
+        if (sprt != null) {
+            double llr = getLLR(score[0], score[1], score[2], sprt[0], sprt[1]);
+            double lower = Math.log(BETA / (1 - ALFA));
+            double upper = Math.log((1 - BETA) / ALFA);
+
+            line += String.format(Locale.ROOT, " | LLR %.2f [%.2f, %.2f]", llr, lower, upper);
+
+            if (llr <= lower || llr >= upper) {
+                line += llr >= upper ? " H1 accepted" : " H0 accepted";
+                isDecided = true;
+            }
+        }
+
+        System.out.println(line);
+
+        if (pdn != null) {
+            pdn.println("[Event \"Match\"]");
+            pdn.println("[Round \"" + (game + 1) + "\"]");
+            pdn.println("[White \"" + engines[WHITE].name + "\"]");
+            pdn.println("[Black \"" + engines[BLACK].name + "\"]");
+            pdn.println("[Result \"" + RESULT[result] + "\"]");
+            pdn.println("[GameType \"20\"]");
+            pdn.println("[FEN \"" + Hub.getPosition(opening) + "\"]");
+            pdn.println();
+
+            String text = "";
+            int number = 1;
+            int color = Hub.getPosition(opening).color;
+
+            if (color == BLACK) {
+                text += "1... ";
+            }
+
+            for (String move : moves) {
+                if (color == WHITE) {
+                    text += number + ". ";
+                }
+
+                text += move + " ";
+                number += color;
+                color = 1 - color;
+            }
+
+            pdn.println(text + RESULT[result]);
+            pdn.println();
+        }
+    }
+
+    private void worker() {
+        Engine[] engines = {null, null};
+
+        try {
+            for (int game = next.getAndIncrement(); game < games && !isDecided; game = next.getAndIncrement()) {
+                for (int i = 0; i < engines.length; i++) {
+                    if (engines[i] == null) {
+                        engines[i] = new Engine(command[i], threads, hash);
+
+                        if (i == 1 && engines[1].name.equals(engines[0].name)) {
+                            engines[1].name += " 2";
+                        }
+                    }
+                }
+
+                //engine 1 white on even games
+                int first = game % 2;
+                Engine[] colors = first == WHITE ? engines : new Engine[] {engines[1], engines[0]};
+                String[] levels = first == WHITE ? level : new String[] {level[1], level[0]};
+                String opening = openings.get(game / 2 % openings.size());
+                ArrayList<String> moves = new ArrayList();
+                int result;
+
+                try {
+                    result = play(colors, levels, Hub.getPosition(opening), moves);
+                } catch (IOException ex) {
+                    //crashed engine (still waiting) loses
+                    int color = colors[WHITE].process.isAlive() ? BLACK : WHITE;
+
+                    System.err.println(colors[color].name + ": " + ex.getMessage());
+
+                    result = 1 - color;
+
+                    for (int i = 0; i < engines.length; i++) {
+                        engines[i].quit();
+                        engines[i] = null;
+                    }
+                }
+
+                result(game, colors, opening, moves, result, first);
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+            isDecided = true;
+        } finally {
+            for (Engine engine : engines) {
+                if (engine != null) {
+                    engine.quit();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Match match = new Match(args);
+        Thread[] workers = new Thread[Math.max(1, Math.min(match.concurrency, match.games))];
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(match::worker);
+            workers[i].start();
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (match.pdn != null) {
+            match.pdn.close();
+        }
+    }
+
+}
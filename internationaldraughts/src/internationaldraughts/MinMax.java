@@ -1,31 +1,75 @@
 package internationaldraughts;
 
-import static internationaldraughts.Board.GRID;
-import static internationaldraughts.Game.EMPTY;
-import static internationaldraughts.Game.KING;
-import static internationaldraughts.Game.MAN;
+import static internationaldraughts.Position.CAPTURES;
+import static internationaldraughts.Position.getCaptureMoves;
+import static internationaldraughts.Position.getFrom;
+import static internationaldraughts.Position.getKey;
+import static internationaldraughts.Position.getKings;
+import static internationaldraughts.Position.getMoves;
+import static internationaldraughts.Position.getTo;
+import static internationaldraughts.TranspositionTable.NONE;
+import static internationaldraughts.TranspositionTable.getBound;
+import static internationaldraughts.TranspositionTable.getDepth;
+import static internationaldraughts.TranspositionTable.getScore;
+import internationaldraughts.Position.MoveList;
+import internationaldraughts.TranspositionTable.Bound;
+import internationaldraughts.TranspositionTable.Replace;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * MinMax
  * 
  * AI move, using basic minimax with alfa beta pruning.
- * 1 Level = 2 moves (alfa & beta).
- * If search depth is reached continues while board contains captures.
- * HashMap for lookup -> no dubble calculations.
- * Move generating looks like Game.turn (don't invent the wheel twice).
- * A 'move' bitboard contains all captures and destinations
+ * Iterative deepening: depth 1, 2, 3... (1 depth = 2 moves (alfa & beta)) until the time (level) or node budget is spent.
+ * The move of the last finished depth is played, an unfinished depth is thrown away.
+ * A depth orders the root moves (score) and the table moves (first) for the next depth.
+ * Score: Evaluation of the root color, updated per move (value), patterns added at quiet leaves.
+ * Move order per node: table move, killer moves (2 per ply), history (from, to) of the other quiet moves.
+ * Principal variation search (below the root): the first move gets the window, the others a null window (re-search if inside the window).
+ * Aspiration: the first root move is searched in a window around the score of the previous depth (full window on fail).
+ * Multi pv (k lines): 1 root pass per depth, a move is searched against the k-th best score so far (window from just below it),
+ * below -> no line (fail low, cheap), else its exact score and pv replace the k-th line. k = 1 -> the best move (and ties).
+ * The principal variation (pv) is kept per ply (triangular) and reported per depth.
+ * Captures all have the same size (max capture rule), they keep the table move first and the generator order.
+ * Quiescence (search depth reached): captures only (capture generator), a quiet position stands pat on its value.
+ * The quiescence is bounded (quiescence plies): at the bound the pending capture is counted and the search stands pat.
+ * Lazy SMP: helper threads search the same root (other move order, odd ones 1 depth deeper) and share the table.
+ * Helpers are tasks on a bounded executor (daemon threads of all engines, idle ones end), cancelled when the main search stops.
+ * TranspositionTable for lookup -> no dubble calculations (zobrist key, depth and bound aware, fixed size).
+ * The table depth is the remaining plies (depth is lowered at MIN nodes only), so an entry means the same for either root color.
+ * Table scores are for the side to move (win and loss from the node), so they stay valid for the next root.
+ * Tablebase (directory tablebase, if generated) cuts off the endgame: win or loss (sooner is better) and draw (0).
+ * A win or loss that takes the plies the draw rules leave (endgame and reversible counters) or more is a draw.
+ * Draws (History, 0): a repetition of the game or the search path (keys since the last man move or capture), 25 move rule, lone king endgames.
+ * Moves are generated by Position (same generator as Game.turn).
+ * No allocations per node: a position is 3 bitboards (turn, opponent, kings) passed by value (no board copies, no undo),
+ * move lists (Position.MoveList) and alfa beta are preallocated per ply.
+ * No Swing: usable headless (Hub, Dxp), an interrupt of the calling thread stops the search (like the time budget).
+ * Statistics: counted per thread (own fields), merged per iteration (Info) and per search (JMX: Statistics.Bean).
  * 
  * enum Node -> alfa beta
- * enum Diagonal -> move in 4 directions (bitboards)
+ * interface Info -> finished depth (depth, score, principal variation and statistics (all threads))
+ * class Line -> root move of a finished depth: exact score (root color) and principal variation
+ * class Helper -> helper search on the executor: cancel -> not started never runs, running stops, await until ended
+ * class Engine -> long-lived AI (1 per Game, Hub, Dxp): table (generations), searchers (history) and statistics are kept between moves
+ * 
+ * main -> search statistics per depth (nodes, branching factor, first move cutoffs)
  * 
  * @author Naardeze
  */
 
-class MinMax extends HashMap<String, Integer> {
+class MinMax {
     final private static int ALFA = Integer.MAX_VALUE;
     final private static int BETA = Integer.MIN_VALUE;
 
@@ -40,6 +84,16 @@ class MinMax extends HashMap<String, Integer> {
             int valueOf(int value) {
                 return value;
             }
+
+            @Override
+            Bound valueOf(Bound bound) {
+                return bound;
+            }
+
+            @Override
+            Node next() {
+                return MIN;
+            }
         },
         MIN {
             @Override
@@ -51,323 +105,837 @@ class MinMax extends HashMap<String, Integer> {
             int valueOf(int value) {
                 return -value;
             }
+
+            @Override
+            Bound valueOf(Bound bound) {
+                return bound == Bound.LOWER ? Bound.UPPER : bound == Bound.UPPER ? Bound.LOWER : Bound.EXACT;
+            }
+
+            @Override
+            Node next() {
+                return MAX;
+            }
         };
         
         abstract int toAlfaBeta(int alfaBeta, int value);
         abstract int valueOf(int value);
+        abstract Bound valueOf(Bound bound);
+        abstract Node next();
     }
     
-    final private static int COLUMN = GRID / 2;
-    final private static int ROW = GRID - 1;
+    static interface Info {
+        void depth(int depth, int score, long[] pv, Statistics statistics);
+    }
     
-    private static enum Diagonal {
-        MIN_X_MIN_Y(COLUMN, 0, -COLUMN) {
-            @Override
-            long getLine(int index, long occupied, long from) {
-                long diagonal = MIN_PLUS[COLUMN - 1 - index % COLUMN + index / COLUMN % 2 + index / GRID];
-
-                return diagonal & (occupied ^ Long.reverse(Long.reverse(diagonal & occupied) - Long.reverse(from)));
+    private static class Helper implements Runnable {
+        final private MinMax minMax;
+        final private Position position;
+        final private ArrayList<Long> rootMoves;
+        final private int k;
+        final private AtomicBoolean isStarted = new AtomicBoolean(false);
+        final private CountDownLatch done = new CountDownLatch(1);
+        
+        private Future<?> future;
+        
+        private Helper(MinMax minMax, Position position, ArrayList<Long> rootMoves, int k) {
+            this.minMax = minMax;
+            this.position = position;
+            this.rootMoves = rootMoves;
+            this.k = k;
+        }
+        
+        static Helper submit(MinMax minMax, Position position, ArrayList<Long> rootMoves, int k) {
+            Helper helper = new Helper(minMax, position, rootMoves, k);
+            
+            helper.future = HELPERS.submit(helper);
+            
+            return helper;
+        }
+        
+        @Override
+        public void run() {
+            if (isStarted.compareAndSet(false, true)) {
+                try {
+                    minMax.search(position, rootMoves, k, Long.MAX_VALUE, Long.MAX_VALUE, MAX_DEPTH);
+                } finally {
+                    done.countDown();
+                }
             }
-        }, 
-        PLUS_X_MIN_Y(COLUMN - 1, 0, -COLUMN + 1) {
-            @Override
-            long getLine(int index, long occupied, long from) {
-                long diagonal = PLUS_MIN[index % COLUMN + index / GRID];
-
-                return diagonal & (occupied ^ Long.reverse(Long.reverse(diagonal & occupied) - Long.reverse(from)));
+        }
+        
+        void cancel() {
+            minMax.stop = true;
+            future.cancel(true);
+            
+            //not started: never runs
+            if (isStarted.compareAndSet(false, true)) {
+                done.countDown();
             }
-        }, 
-        MIN_X_PLUS_Y(COLUMN, ROW, COLUMN) {
-            @Override
-            long getLine(int index, long occupied, long from) {
-                long diagonal = PLUS_MIN[index % COLUMN + index / GRID];
-
-                return diagonal & (occupied ^ ((diagonal & occupied) - from));
+        }
+        
+        //until ended (an interrupt is kept)
+        void await() {
+            boolean isInterrupted = Thread.interrupted();
+            
+            while (done.getCount() > 0) {
+                try {
+                    done.await();
+                } catch (InterruptedException ex) {
+                    isInterrupted = true;
+                }
             }
-        }, 
-        PLUS_X_PLUS_Y(COLUMN - 1, ROW, COLUMN + 1) {
-            @Override
-            long getLine(int index, long occupied, long from) {
-                long diagonal = MIN_PLUS[COLUMN - 1 - index % COLUMN + index / COLUMN % 2 + index / GRID];
-
-                return diagonal & (occupied ^ ((diagonal & occupied) - from));
+            
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
             }
-        };
-
-        final int column;
-        final int row;
-        final int step;
-
-        Diagonal(int column, int row, int step) {
-            this.column = column;
-            this.row = row;
-            this.step = step;
         }
-
-        boolean hasNext(int index) {
-            return index % GRID != column && index / COLUMN != row;
+    }
+    
+    static class Line {
+        final long move;
+        final int score;
+        final long[] pv;
+        
+        Line(long move, int score, long[] pv) {
+            this.move = move;
+            this.score = score;
+            this.pv = pv;
         }
-
-        long getNext(int index) {
-            return 1l << index + step - index / COLUMN % 2;
+    }
+    
+    final static int HASH = 32;
+    final static int TIME = 250;
+    
+    static int threads = Runtime.getRuntime().availableProcessors();
+    static int quiescence = 16;
+    static Tablebase tablebase = Tablebase.open(new File(Tablebase.DIRECTORY));
+    
+    final private static int MAX_DEPTH = 64;
+    final private static int MAX_PLY = 256;
+    final private static int CHECK = 1023;
+    final private static int ASPIRATION = Evaluation.MAN / 4;
+    
+    //helper searches of all engines (1 per core at a time)
+    final private static ThreadPoolExecutor HELPERS = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 60l, TimeUnit.SECONDS, new LinkedBlockingQueue(), runnable -> {
+        Thread thread = new Thread(runnable, "helper");
+        
+        thread.setDaemon(true);
+        
+        return thread;
+    });
+    
+    static {
+        HELPERS.allowCoreThreadTimeOut(true);
+    }
+    
+    final private TranspositionTable table;
+    final private int hash;
+    final private int[] color = new int[2];
+    final private int helper;
+    
+    final private MoveList[] moves = new MoveList[MAX_PLY];
+    final private int[][] alfaBeta = new int[MAX_PLY][2];
+    final private long[][] pv = new long[MAX_PLY + 1][MAX_PLY];
+    final private int[] pvLength = new int[MAX_PLY + 1];
+    
+    private long deadline = Long.MAX_VALUE;
+    private long maxNodes = Long.MAX_VALUE;
+    private long nodes = 0l;
+    private volatile boolean stop = false;
+    private Info info = null;
+    
+    //game (before the root) and search path: keys since the last man move or capture (repetition), draw rule counters (History)
+    private long[] keys = new long[MAX_PLY + 1];
+    private int offset = 0;
+    final private int[] reversible = new int[MAX_PLY + 1];
+    final private int[] endgame = new int[MAX_PLY + 1];
+    
+    final private long[][] killer = new long[MAX_PLY][2];
+    final private int[][][] history = new int[2][Long.bitCount(CAPTURES)][Long.bitCount(CAPTURES)];
+    private int[] order = new int[64];
+    
+    private long cutoffs = 0l;
+    private long firstCutoffs = 0l;
+    private long quiescenceNodes = 0l;
+    private long tableProbes = 0l;
+    private long tableHits = 0l;
+    private long tablebaseHits = 0l;
+    private int maxPly = 0;
+    private int finished = 0;
+    private long start = 0l;
+    private long iterationTime = 0l;
+    
+    private MinMax(TranspositionTable table, int hash, int helper) {
+        this.table = table;
+        this.hash = hash;
+        this.helper = helper;
+        
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new MoveList();
         }
-
-        abstract long getLine(int index, long occupied, long from);
-
-        final private static long[] MIN_PLUS = new long[GRID];
-        final private static long[] PLUS_MIN = new long[GRID - 1];
-
-        static {
-            for (int i = 0; i < MIN_PLUS.length; i++) {
-                MIN_PLUS[i] = 0l;
-
-                for (int j = COLUMN - 1 - Math.min(i, COLUMN - 1) + i / COLUMN * COLUMN + Math.max(0, i - COLUMN) * GRID; Long.bitCount(MIN_PLUS[i]) < 1 + (Math.min(i, COLUMN - 1) - Math.max(0, i - COLUMN)) * 2; j += COLUMN + 1 - j / COLUMN % 2) {
-                    MIN_PLUS[i] ^= 1l << j;
-                }
-            }
-
-            for (int i = 0; i < PLUS_MIN.length; i++) {
-                PLUS_MIN[i] = 0l;
-
-                for (int j = Math.min(i, COLUMN - 1) + Math.max(0, i - (COLUMN - 1)) * GRID; Long.bitCount(PLUS_MIN[i]) < 2 + (Math.min(i, COLUMN - 1) - Math.max(0, i - (COLUMN - 1))) * 2; j += COLUMN - j / COLUMN % 2) {
-                    PLUS_MIN[i] ^= 1l << j;
+    }
+    
+    //new search (game), before the search thread starts: counters and budget reset, history ages (halved)
+    private void reset(History game, Info info) {
+        int ai = game.getPosition().color;
+        
+        color[Node.MAX.ordinal()] = ai;
+        color[Node.MIN.ordinal()] = 1 - ai;
+        
+        this.info = info;
+        
+        //keys of the game since the last man move or capture, root at offset
+        offset = Math.min(game.getReversible(), game.size());
+        
+        if (keys.length < offset + MAX_PLY + 1) {
+            keys = new long[offset + MAX_PLY + 1];
+        }
+        
+        for (int i = 0; i <= offset; i++) {
+            keys[i] = game.getKey(game.size() - offset + i);
+        }
+        
+        reversible[0] = game.getReversible();
+        endgame[0] = game.getEndgame();
+        
+        deadline = Long.MAX_VALUE;
+        maxNodes = Long.MAX_VALUE;
+        stop = false;
+        nodes = 0l;
+        cutoffs = 0l;
+        firstCutoffs = 0l;
+        quiescenceNodes = 0l;
+        tableProbes = 0l;
+        tableHits = 0l;
+        tablebaseHits = 0l;
+        maxPly = 0;
+        finished = 0;
+        iterationTime = 0l;
+        
+        for (int[][] color : history) {
+            for (int[] from : color) {
+                for (int to = 0; to < from.length; to++) {
+                    from[to] >>= 1;
                 }
             }
         }
     }
-
-    private static long middle = 0l;
-
-    static {
-        for (int i = COLUMN; i < ROW * COLUMN; i++) {
-            if (i % GRID != COLUMN - 1 && i % GRID != COLUMN) {
-                middle ^= 1l << i;
-            }
+    
+    //root score -> win or loss from ply (saturated)
+    private static int toPly(int score, int ply) {
+        if (score == ALFA || score == BETA) {
+            return score;
+        } else if (score > ALFA / 2) {
+            return (int) Math.min(ALFA - 1, (long) score + ply);
+        } else if (score < BETA / 2) {
+            return (int) Math.max(BETA + 1, (long) score - ply);
         }
+        
+        return score;
     }
     
-    final private Node node;
-    final private int color;
+    //root score <-> side to move (node)
+    private static int toSide(Node node, int score) {
+        if (node == Node.MAX) {
+            return score;
+        }
+        
+        return score == ALFA ? BETA : score == BETA ? ALFA : -score;
+    }
     
-    MinMax(Node node, int color) {
-        this.node = node;
-        this.color = color;
+    //table scores are for the side to move, win and loss from the node (the same for every root)
+    private static int toTable(Node node, int score, int ply) {
+        return toSide(node, toPly(score, ply));
     }
     
-    private int valueOf(char[] board, long turn, long opponent, MinMax minMax, int[] alfaBeta, int value, int depth) {
-        HashMap<Integer, HashSet<Long>> moves = new HashMap();
-        int maxCapture = 0;
+    private static int fromTable(Node node, int score, int ply) {
+        return toPly(toSide(node, score), -ply);
+    }
     
-        for (long empty = ~(turn ^ opponent), pieces = turn; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
-            int from = Long.numberOfTrailingZeros(pieces);
-            boolean isKing = board[from] == KING[color];
+    //remaining plies of depth: MAX 2 * depth, MIN 2 * depth - 1 (table depth)
+    private static int toPlies(Node node, int depth) {
+        return 2 * depth - node.ordinal();
+    }
+    
+    //value of the position after move (value before move + evaluation change)
+    private int valueOfMove(Node node, int ply, long turn, long opponent, long kings, long key, long move, int alfa, int beta, int value, int depth) {
+        int color = this.color[node.ordinal()];
+        long next = getKings(color, kings, move);
+        boolean isKing = (kings >>> getFrom(move) & 1l) == 1l;
+        
+        //draw rules (History)
+        keys[offset + ply + 1] = getKey(color, key, kings, move);
+        reversible[ply + 1] = isKing && (move & CAPTURES) == 0l ? reversible[ply] + 1 : 0;
+        endgame[ply + 1] = (move & CAPTURES) != 0l || !isKing && (next >>> getTo(move) & 1l) == 1l ? 0 : endgame[ply] + 1;
+        
+        return valueOf(node.next(), ply + 1, opponent ^ move & CAPTURES, turn ^ (1l << getFrom(move) ^ 1l << getTo(move)), next, keys[offset + ply + 1], alfa, beta, value + node.valueOf(Evaluation.getValue(color, kings, move)), depth);
+    }
+    
+    //repetition (of the game or the search path, hash compare), 25 move rule and lone king endgames
+    private boolean isDraw(int ply, long turn, long opponent, long kings) {
+        for (int i = offset + ply - 4; i >= Math.max(0, offset + ply - reversible[ply]); i -= 2) {
+            if (keys[i] == keys[offset + ply]) {
+                return true;
+            }
+        }
+        
+        return History.isDraw(reversible[ply], endgame[ply], turn, opponent, kings);
+    }
+    
+    //node count, time budget and interrupt
+    private boolean isStop() {
+        if (++nodes >= maxNodes || ((nodes & CHECK) == 0 && (System.currentTimeMillis() >= deadline || Thread.currentThread().isInterrupted()))) {
+            stop = true;
+        }
+        
+        return stop;
+    }
+    
+    private int valueOf(Node node, int ply, long turn, long opponent, long kings, long key, int alfa, int beta, int value, int depth) {
+        if (isStop()) {
+            return 0;
+        }
+        
+        pvLength[ply] = 0;
+        maxPly = Math.max(maxPly, ply);
+        
+        if (ply > 0 && isDraw(ply, turn, opponent, kings)) {
+            return 0;
+        }
+        
+        if (ply > 0 && Long.bitCount(turn | opponent) <= tablebase.pieces) {
+            int result = tablebase.probe(color[node.ordinal()], turn, opponent, kings);
             
-            HashSet<Long> movesPiece = new HashSet();
-            int maxCapturePiece = maxCapture;
-
-            for (Diagonal[] horizontal : new Diagonal[][] {{Diagonal.MIN_X_MIN_Y, Diagonal.MIN_X_PLUS_Y}, {Diagonal.PLUS_X_MIN_Y, Diagonal.PLUS_X_PLUS_Y}}) {
-                for (Diagonal vertical : horizontal) {
-                    if (vertical.hasNext(from)) {
-                        long move = vertical.getNext(from);
-
-                        if (isKing && (move & middle & empty) == move) {
-                            move = vertical.getLine(from, ~empty, move);
-                        }
-                       
-                        long capture = move & opponent;
-                        
-                        if ((capture & middle) != 0l) {
-                            long step = vertical.getNext(Long.numberOfTrailingZeros(capture));
-                            
-                            if ((step & empty) == step) {
-                                if (isKing && (step & middle) == step) {
-                                    step = vertical.getLine(from, ~empty, step) & empty;
-                                }
-                                
-                                ArrayList<Long> captureMoves = new ArrayList(Arrays.asList(new Long[] {capture ^ step}));
-                                
-                                empty ^= 1l << from;
-                                
-                                do {
-                                    move = captureMoves.remove(0);
-
-                                    long captures = move & opponent;
+            if (result != Tablebase.NONE) {
+                tablebaseHits++;
                 
-                                    if (Long.bitCount(captures) >= maxCapturePiece) {
-                                        if (Long.bitCount(captures) > maxCapturePiece) {
-                                            movesPiece.clear();
-                                            maxCapturePiece++;
-                                        }
-                                        
-                                        movesPiece.add(move);
-                                    }
-                                    
-                                    for (long destination = move ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
-                                        int to = Long.numberOfTrailingZeros(destination);
-
-                                        for (Diagonal diagonal : Diagonal.values()) {
-                                            if (diagonal.hasNext(to)) {
-                                                step = diagonal.getNext(to);
-                                                
-                                                if (isKing && (step & middle & empty) == step) {
-                                                    step = diagonal.getLine(to, ~empty, step);
-                                                }
-
-                                                if ((step & move) == 0l) {
-                                                    capture = step & opponent;
-
-                                                    if ((capture & middle) != 0l) {
-                                                        step = diagonal.getNext(Long.numberOfTrailingZeros(capture));
+                //the tables ignore the draw rules: a win or loss that takes the plies left (or more) is a draw
+                if ((result > 0 ? result : -1 - result) >= History.getPlies(reversible[ply], endgame[ply], turn, opponent, kings)) {
+                    result = 0;
+                }
+            }
+            
+            if (result > 0) {
+                return node.valueOf(ALFA - ply - result);
+            } else if (result < 0 && result != Tablebase.NONE) {
+                return node.valueOf(BETA + ply - result);
+            } else if (result == 0) {
+                return 0;
+            }
+        }
+        
+        long entry = table.get(key);
+        
+        tableProbes++;
+        
+        if (entry != NONE) {
+            tableHits++;
+        }
+        
+        if (entry != NONE && getDepth(entry) >= toPlies(node, depth)) {
+            int score = fromTable(node, getScore(entry), ply);
+            
+            if (node.valueOf(getBound(entry)).isCutoff(score, alfa, beta)) {
+                return score;
+            }
+        }
+        
+        if (depth == 0) {
+            return quiesce(node, ply, turn, opponent, kings, alfa, beta, value, 0);
+        }
+        
+        int[] alfaBeta = this.alfaBeta[ply];
+        
+        alfaBeta[Node.MAX.ordinal()] = alfa;
+        alfaBeta[Node.MIN.ordinal()] = beta;
+        
+        MoveList moves = this.moves[ply];
+        
+        getMoves(color[node.ordinal()], turn, opponent, kings, moves);
+        
+        if (moves.size == 0) {
+            table.put(key, toTable(node, alfaBeta[node.ordinal()], ply), toPlies(node, depth), node.valueOf(Bound.getBound(alfaBeta[node.ordinal()], alfa, beta)), 0, 0);
+            
+            return alfaBeta[node.ordinal()];
+        }
+        
+        int maxCapture = Long.bitCount(moves.move[0] & CAPTURES);
+        
+        int first = 0;
+        
+        //table move first
+        for (int i = 0; i < moves.size; i++) {
+            if (getFrom(moves.move[i]) == TranspositionTable.getFrom(entry) && getTo(moves.move[i]) == TranspositionTable.getTo(entry)) {
+                long move = moves.move[i];
+                
+                moves.move[i] = moves.move[0];
+                moves.move[0] = move;
+                first = 1;
+                
+                break;
+            }
+        }
+        
+        if (maxCapture == 0) {
+            order(moves, first, ply, color[node.ordinal()]);
+        }
+        
+        long alfaMove = 0l;
+        
+        for (int i = 0; i < moves.size; i++) {
+            int max = alfaBeta[Node.MAX.ordinal()];
+            int min = alfaBeta[Node.MIN.ordinal()];
+            int score;
+            
+            if (i == 0) {
+                score = valueOfMove(node, ply, turn, opponent, kings, key, moves.move[i], max, min, value, Math.max(0, depth - node.ordinal()));
+            } else {
+                //null window, inside the window -> re-search
+                score = valueOfMove(node, ply, turn, opponent, kings, key, moves.move[i], node == Node.MAX ? max : min - 1, node == Node.MAX ? max + 1 : min, value, Math.max(0, depth - node.ordinal()));
+                
+                if (score > max && score < min && !stop) {
+                    score = valueOfMove(node, ply, turn, opponent, kings, key, moves.move[i], max, min, value, Math.max(0, depth - node.ordinal()));
+                }
+            }
 
-                                                        if ((step & empty) == step) {
-                                                            if (isKing && (step & middle) == step) {
-                                                                step = diagonal.getLine(to, ~empty, step) & empty;
-                                                            }
+            if (stop) {
+                return 0;
+            }
 
-                                                            captureMoves.add(captures ^ capture ^ step);
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                } while (!captureMoves.isEmpty());
-                                
-                                empty ^= 1l << from;
-                            }
-                        }
-            
-                        if (maxCapturePiece == 0 && (isKing || vertical == horizontal[color])) {
-                            move &= empty;
+            if (node.toAlfaBeta(alfaBeta[node.ordinal()], score) != alfaBeta[node.ordinal()]) {
+                alfaBeta[node.ordinal()] = score;
+                alfaMove = moves.move[i];
+                
+                setPV(ply, alfaMove);
+            }
 
-                            if (move != 0l) {
-                                movesPiece.add(move);
-                            }
-                        }
+            if (alfaBeta[Node.MAX.ordinal()] >= alfaBeta[Node.MIN.ordinal()]) {
+                cutoffs++;
+                
+                if (i == 0) {
+                    firstCutoffs++;
+                }
+                
+                if (maxCapture == 0) {
+                    long move = moves.move[i];
+                    
+                    if (move != killer[ply][0]) {
+                        killer[ply][1] = killer[ply][0];
+                        killer[ply][0] = move;
                     }
+                    
+                    history[color[node.ordinal()]][getFrom(move)][getTo(move)] += (depth + 1) * (depth + 1);
                 }
+                
+                break;
             }
+        }
+        
+        table.put(key, toTable(node, alfaBeta[node.ordinal()], ply), toPlies(node, depth), node.valueOf(Bound.getBound(alfaBeta[node.ordinal()], alfa, beta)), getFrom(alfaMove), getTo(alfaMove));
+        
+        return alfaBeta[node.ordinal()];
+    }
+    
+    //captures only (no table), quiet -> stand pat (value + patterns), quiescence plies -> stand pat after the best (forced) capture
+    private int quiesce(Node node, int ply, long turn, long opponent, long kings, int alfa, int beta, int value, int count) {
+        pvLength[ply] = 0;
+        maxPly = Math.max(maxPly, ply);
+        quiescenceNodes++;
+        
+        //no pieces left (lost)
+        if (turn == 0l) {
+            return node == Node.MAX ? alfa : beta;
+        }
+        
+        MoveList moves = this.moves[ply];
+        
+        getCaptureMoves(color[node.ordinal()], turn, opponent, kings, moves);
+        
+        int color = this.color[node.ordinal()];
+        
+        if (moves.size == 0) {
+            return value + node.valueOf(Evaluation.getPattern(color, turn, opponent, kings));
+        }
+        
+        if (count == quiescence) {
+            int capture = Integer.MIN_VALUE;
             
-            if (!movesPiece.isEmpty()) {
-                if (maxCapturePiece > maxCapture) {
-                    moves.clear();
-                    maxCapture = maxCapturePiece;
-                }
-                
-                moves.put(from, movesPiece);
+            for (int i = 0; i < moves.size; i++) {
+                capture = Math.max(capture, Evaluation.getValue(color, kings, moves.move[i]));
             }
+            
+            return value + node.valueOf(capture + Evaluation.getPattern(color, turn, opponent, kings));
         }
         
-        if (moves.isEmpty()) {
-            return alfaBeta[node.ordinal()];
-        } else if (depth > 0) {
-            depth -= node.ordinal();
-        } else if (maxCapture == 0) {
-            return value;
+        int[] alfaBeta = this.alfaBeta[ply];
+        
+        alfaBeta[Node.MAX.ordinal()] = alfa;
+        alfaBeta[Node.MIN.ordinal()] = beta;
+        
+        for (int i = 0; i < moves.size; i++) {
+            long move = moves.move[i];
+            
+            if (isStop()) {
+                return 0;
+            }
+            
+            int score = quiesce(node.next(), ply + 1, opponent ^ move & CAPTURES, turn ^ (1l << getFrom(move) ^ 1l << getTo(move)), getKings(color, kings, move), alfaBeta[Node.MAX.ordinal()], alfaBeta[Node.MIN.ordinal()], value + node.valueOf(Evaluation.getValue(color, kings, move)), count + 1);
+            
+            if (stop) {
+                return 0;
+            }
+            
+            if (node.toAlfaBeta(alfaBeta[node.ordinal()], score) != alfaBeta[node.ordinal()]) {
+                alfaBeta[node.ordinal()] = score;
+                
+                setPV(ply, move);
+            }
+            
+            if (alfaBeta[Node.MAX.ordinal()] >= alfaBeta[Node.MIN.ordinal()]) {
+                break;
+            }
         }
         
-        value += node.valueOf(maxCapture);
+        return alfaBeta[node.ordinal()];
+    }
+    
+    //move + pv of the next ply
+    private void setPV(int ply, long move) {
+        pv[ply][0] = move;
+        
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
         
-        for (int from : moves.keySet()) {
-            char piece = board[from];
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+    
+    //killers, then history (moves from first)
+    private void order(MoveList moves, int first, int ply, int color) {
+        if (order.length < moves.size) {
+            order = new int[moves.move.length];
+        }
+        
+        for (int i = first; i < moves.size; i++) {
+            long move = moves.move[i];
+            int score = move == killer[ply][0] ? Integer.MAX_VALUE : move == killer[ply][1] ? Integer.MAX_VALUE - 1 : history[color][getFrom(move)][getTo(move)];
+            int j = i;
             
-            board[from] = EMPTY;
+            //insertion sort (descending)
+            for (; j > first && order[j - 1] < score; j--) {
+                order[j] = order[j - 1];
+                moves.move[j] = moves.move[j - 1];
+            }
             
-            for (long move : moves.get(from)) {
-                long captures = move & opponent;
-                ArrayList<Integer> captured = new ArrayList();
+            order[j] = score;
+            moves.move[j] = move;
+        }
+    }
+    
+    //lines (k) of the last finished depth, score order (ties of the k-th kept), no finished depth -> all root moves (value)
+    private ArrayList<Line> search(Position position, ArrayList<Long> rootMoves, int k, long deadline, long nodes, int maxDepth) {
+        start = System.currentTimeMillis();
+        
+        int value = Evaluation.valueOf(position.color, position.turn, position.opponent, position.kings);
+        
+        ArrayList<Line> lines = new ArrayList();
+        
+        for (long move : rootMoves) {
+            lines.add(new Line(move, value, new long[] {move}));
+        }
+        
+        int last = BETA;
+        
+        //1 root move: no search (k = 1)
+        for (int depth = 1 + helper % 2; depth <= maxDepth && rootMoves.size() > (k > 1 ? 0 : 1); depth++) {
+            HashMap<Long, Integer> score = new HashMap();
+            ArrayList<Line> depthLines = new ArrayList();
+            long iteration = System.currentTimeMillis();
+            //score of the k-th line (BETA -> less than k lines)
+            int bound = BETA;
+            
+            for (long move : rootMoves) {
+                int min;
                 
-                for (long l = captures; l != 0l; l ^= Long.lowestOneBit(l)) {
-                    captured.add(Long.numberOfTrailingZeros(l));
+                if (bound == BETA) {
+                    //aspiration (previous depth), fail -> full window
+                    if (depthLines.isEmpty() && Math.abs(last) < ALFA / 2) {
+                        min = valueOfMove(Node.MAX, 0, position.turn, position.opponent, position.kings, position.key, move, last - ASPIRATION, last + ASPIRATION, value, depth);
+                        
+                        if ((min <= last - ASPIRATION || min >= last + ASPIRATION) && !stop) {
+                            min = valueOfMove(Node.MAX, 0, position.turn, position.opponent, position.kings, position.key, move, BETA, ALFA, value, depth);
+                        }
+                    } else {
+                        min = valueOfMove(Node.MAX, 0, position.turn, position.opponent, position.kings, position.key, move, BETA, ALFA, value, depth);
+                    }
+                } else {
+                    //bound - 1 keeps ties (a null window would re-search every tie)
+                    min = valueOfMove(Node.MAX, 0, position.turn, position.opponent, position.kings, position.key, move, bound - 1, ALFA, value, depth);
                 }
                 
-                for (long destination = move ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
-                    int to = Long.numberOfTrailingZeros(destination);
-                    String key = String.valueOf(getBoard(color, board.clone(), piece, captured, to));
-                    
-                    if (!containsKey(key)) {
-                        put(key, minMax.valueOf(key.toCharArray(), opponent ^ captures, turn ^ (1l << from ^ 1l << to), this, alfaBeta.clone(), value, depth));
-                    }
+                if (stop) {
+                    return lines;
+                }
+                
+                score.put(move, min);
+                
+                if (min >= bound) {
+                    setPV(0, move);
                     
-                    alfaBeta[node.ordinal()] = node.toAlfaBeta(alfaBeta[node.ordinal()], get(key));
+                    depthLines.add(new Line(move, min, Arrays.copyOf(pv[0], pvLength[0])));
+                    depthLines.sort((line1, line2) -> Integer.compare(line2.score, line1.score));
                     
-                    if (alfaBeta[Node.MAX.ordinal()] >= alfaBeta[Node.MIN.ordinal()]) {
-                        return alfaBeta[node.ordinal()];
+                    if (depthLines.size() >= k) {
+                        bound = depthLines.get(k - 1).score;
+                        
+                        while (depthLines.get(depthLines.size() - 1).score < bound) {
+                            depthLines.remove(depthLines.size() - 1);
+                        }
                     }
                 }
             }
             
-            board[from] = piece;
+            rootMoves.sort((move1, move2) -> Integer.compare(score.get(move2), score.get(move1)));
+            lines = depthLines;
+            last = lines.get(0).score;
+            finished = depth;
+            iterationTime = System.currentTimeMillis() - iteration;
+            
+            if (info != null) {
+                info.depth(depth, last, lines.get(0).pv, getStatistics());
+            }
+            
+            //won or lost
+            if (last == ALFA || last == BETA) {
+                break;
+            }
+            
+            this.deadline = deadline;
+            maxNodes = nodes;
         }
         
-        return alfaBeta[node.ordinal()];
+        return lines;
     }
     
-    private static char[] getBoard(int color, char[] board, char piece, ArrayList<Integer> captured, int to) {
-        if (piece == MAN[color] && to / COLUMN == color * ROW) {
-            piece = KING[color];
-        }
+    //counters of this thread
+    private Statistics getStatistics() {
+        Statistics statistics = new Statistics();
         
-        board[to] = piece;
+        statistics.depth = finished;
+        statistics.maxPly = maxPly;
+        statistics.nodes = nodes;
+        statistics.quiescenceNodes = quiescenceNodes;
+        statistics.tableProbes = tableProbes;
+        statistics.tableHits = tableHits;
+        statistics.tablebaseHits = tablebaseHits;
+        statistics.cutoffs = cutoffs;
+        statistics.firstCutoffs = firstCutoffs;
+        statistics.time = System.currentTimeMillis() - start;
+        statistics.iterationTime = iterationTime;
+        statistics.hash = hash;
+        
+        return statistics;
+    }
+    
+    //level -> time (ms) for 1 move
+    static long getTime(int level) {
+        return (long) TIME << level - 1;
+    }
+    
+    private static ArrayList<Long> getRootMoves(Position position) {
+        ArrayList<Long> rootMoves = new ArrayList();
         
-        captured.forEach(capture -> board[capture] = EMPTY);
+        for (long move : position.getMoves()) {
+            rootMoves.add(move);
+        }
         
-        return board;
+        return rootMoves;
+    }
+    
+    //time (ms) left, increment (ms) and moves to go (0 -> unknown) -> time for 1 move
+    static long getTime(long time, long increment, int moves) {
+        return Math.max(1l, Math.min(time / 2, time / (moves > 0 ? moves : 30) + increment) - TIME / 5);
     }
     
-    static ArrayList<Integer> getAIMove(int ai, char[] board, HashSet<Integer>[] pieces, HashMap<Integer, HashSet<ArrayList<Integer>>> moves, int maxCapture, int level) {
-        int player = 1 - ai;
+    static class Engine {
+        private TranspositionTable table = new TranspositionTable(HASH, Replace.DEPTH);
+        private int hash = HASH;
+        private MinMax[] minMax = new MinMax[0];
+        private Statistics statistics = new Statistics();
         
-        long turn =  0l;
-        long opponent =  0l;
+        //main (0) and helpers, kept between searches (history)
+        private MinMax[] getMinMax(int count) {
+            if (minMax.length < count) {
+                int length = minMax.length;
+                
+                minMax = Arrays.copyOf(minMax, count);
+                
+                for (int i = length; i < count; i++) {
+                    minMax[i] = new MinMax(table, hash, i);
+                }
+            }
+            
+            return minMax;
+        }
         
-        for (int index : pieces[ai]) {
-            turn ^= 1l << index;
+        //new game, undo: empty table and history
+        void clear() {
+            table.clear();
+            minMax = new MinMax[0];
         }
         
+        //hash (megabytes) -> new (empty) table
+        void setHash(int megabytes) {
+            table = new TranspositionTable(megabytes, Replace.DEPTH);
+            hash = megabytes;
+            minMax = new MinMax[0];
+        }
         
-        for (int index : pieces[player]) {
-            opponent ^= 1l << index;
+        //last search
+        Statistics getStatistics() {
+            return statistics;
         }
         
-        MinMax minMaxMin = new MinMax(Node.MIN, player);
-        MinMax minMaxMax = new MinMax(Node.MAX, ai);
+        //table move (expected move) or 0
+        long getPonderMove(Position position) {
+            long entry = table.get(position.key);
+
+            if (entry != NONE) {
+                for (long move : position.getMoves()) {
+                    if (getFrom(move) == TranspositionTable.getFrom(entry) && getTo(move) == TranspositionTable.getTo(entry)) {
+                        return move;
+                    }
+                }
+            }
+
+            return 0l;
+        }
         
-        ArrayList<ArrayList<Integer>> alfaMoves = new ArrayList();
-        int max = BETA;
+        //fixed depth, 1 thread (benchmarks, tools), the caller clears (table and history) outside the timing
+        private MinMax search(Position position, int depth) {
+            MinMax minMax = getMinMax(1)[0];
+            
+            minMax.reset(new History(position), null);
+            minMax.search(position, getRootMoves(position), 1, Long.MAX_VALUE, Long.MAX_VALUE, depth);
+            
+            return minMax;
+        }
+        
+        long getNodes(Position position, int depth) {
+            return search(position, depth).nodes;
+        }
+        
+        long getAIMove(Position position, int level) {
+            return getAIMove(new History(position), level);
+        }
+        
+        long getAIMove(Position position, long time, long nodes) {
+            return getAIMove(new History(position), time, nodes);
+        }
+        
+        long getAIMove(Position position, long time, long nodes, int depth, Info info) {
+            return getAIMove(new History(position), time, nodes, depth, info);
+        }
         
-        for (int from : moves.keySet()) {
-            char piece = board[from];
+        //game (moves played) -> repetitions and draw rules
+        long getAIMove(History game, int level) {
+            return getAIMove(game, getTime(level), Long.MAX_VALUE);
+        }
+        
+        long getAIMove(History game, long time, long nodes) {
+            return getAIMove(game, time, nodes, MAX_DEPTH, null);
+        }
+        
+        long getAIMove(History game, long time, long nodes, int depth, Info info) {
+            ArrayList<Line> lines = search(game, 1, time, nodes, depth, info);
+            int ties = 1;
+            
+            while (ties < lines.size() && lines.get(ties).score == lines.get(0).score) {
+                ties++;
+            }
             
-            board[from] = EMPTY;
+            return lines.get((int) (Math.random() * ties)).move;
+        }
+        
+        ArrayList<Line> getLines(Position position, int k, long time, long nodes, int depth, Info info) {
+            return getLines(new History(position), k, time, nodes, depth, info);
+        }
+        
+        //best k root moves (multi pv, 1 search): score order, exact scores, principal variations
+        ArrayList<Line> getLines(History game, int k, long time, long nodes, int depth, Info info) {
+            ArrayList<Line> lines = search(game, Math.max(1, k), time, nodes, depth, info);
             
-            for (ArrayList<Integer> move : moves.get(from)) {
-                int to = move.remove(maxCapture);
-                long captures = 0l;
+            return new ArrayList(lines.subList(0, Math.min(k, lines.size())));
+        }
+        
+        private ArrayList<Line> search(History game, int k, long time, long nodes, int depth, Info info) {
+            long start = System.currentTimeMillis();
+            
+            Position position = game.getPosition();
+            ArrayList<Long> rootMoves = getRootMoves(position);
+            MinMax[] minMax = getMinMax(threads);
+            MinMax[] helpers = Arrays.copyOfRange(minMax, 1, rootMoves.size() > (k > 1 ? 0 : 1) ? threads : 1);
+            Helper[] helperTasks = new Helper[helpers.length];
+            
+            table.age();
+            
+            for (int i = 0; i < helpers.length; i++) {
+                MinMax helper = helpers[i];
+                ArrayList<Long> helperMoves = new ArrayList(rootMoves);
                 
-                for (int capture : move) {
-                    captures ^= 1l << capture;
-                }
+                Collections.rotate(helperMoves, 1 + i);
                 
-                int min = minMaxMin.valueOf(getBoard(ai, board.clone(), piece, move, to), opponent ^ captures, turn ^ (1l << from ^ 1l << to), minMaxMax, new int[] {BETA, ALFA}, maxCapture, level);
+                helper.reset(game, null);
                 
-                if (min >= max) {
-                    if (min > max) {
-                        alfaMoves.clear();
-                        max = min;
-                    }
-                    
-                    move.add(0, from);
-                    move.add(to);
-                    
-                    alfaMoves.add(move);
+                helperTasks[i] = Helper.submit(helper, position, helperMoves, k);
+            }
+            
+            minMax[0].reset(game, info == null ? null : (finished, score, pv, statistics) -> {
+                for (MinMax helper : helpers) {
+                    statistics.add(helper.getStatistics());
                 }
+                
+                info.depth(finished, score, pv, statistics);
+            });
+            
+            ArrayList<Line> lines = minMax[0].search(position, rootMoves, k, Math.min(Long.MAX_VALUE - start, time) + start, nodes, Math.min(MAX_DEPTH, depth));
+            for (Helper helper : helperTasks) {
+                helper.cancel();
             }
-
-            board[from] = piece;
+            
+            //helpers are reused (next search): ended before the return
+            for (Helper helper : helperTasks) {
+                helper.await();
+            }
+            
+            statistics = minMax[0].getStatistics();
+            
+            for (MinMax helper : helpers) {
+                statistics.add(helper.getStatistics());
+            }
+            
+            Statistics.getBean().add(statistics);
+            
+            return lines;
         }
+    }
+    
+    public static void main(String[] args) {
+        Position position = new Position(args.length > 1 ? args[0] : Position.START);
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[args.length - 1]) : 6;
+        Engine engine = new Engine();
+        long nodes = 0l;
         
-        return alfaMoves.get((int) (Math.random() * alfaMoves.size()));
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            engine.clear();
+            
+            long time = System.nanoTime();
+            MinMax minMax = engine.search(position, depth);
+            
+            time = System.nanoTime() - time;
+            
+            System.out.println(String.format(Locale.ROOT, "depth %d: %d nodes, branching %.2f, first move cutoffs %.1f%% (%d cutoffs), %d ms", depth, minMax.nodes, nodes == 0l ? 0.0 : (double) minMax.nodes / nodes, minMax.cutoffs == 0l ? 0.0 : 100.0 * minMax.firstCutoffs / minMax.cutoffs, minMax.cutoffs, time / 1000000));
+            
+            nodes = minMax.nodes;
+        }
     }
     
 }
@@ -0,0 +1,126 @@
+package internationaldraughts;
+
+import static internationaldraughts.Position.getCaptures;
+import static internationaldraughts.Position.getFrom;
+import static internationaldraughts.Position.getKings;
+import static internationaldraughts.Position.getMoves;
+import static internationaldraughts.Position.getTo;
+import internationaldraughts.Position.MoveList;
+
+/**
+ * Perft
+ *
+ * Headless check of the move generator (Position.getMoves): counts the leaves of the legal move tree.
+ * Duplicate captures (same from, to and captured pieces) count once.
+ *
+ * perft [fen] depth -> count and moves per second per depth, divide (count per root move) for the last depth.
+ * perft suite -> regression suite with known counts (start, king captures, max capture, promotion), exit 1 on failure.
+ *
+ * @author Naardeze
+ */
+
+class Perft {
+    //fen count(depth 1) count(depth 2)...
+    final private static String[] SUITE = {
+        //start, woldouby
+        Position.START + " 9 81 658 4265 27117 167140 1049442",
+        "W:W25,27,28,30,32,33,34,35,37,38:B12,13,14,16,18,19,21,23,24,26 6 12 30 73 215 590 1944",
+        "W:W27,28,32,33,34,36,37,38,39,40,42,43,44,45,47:B4,6,8,9,11,12,13,14,16,17,18,19,22,23,26 8 14 44 171 794 3903",
+        //king multi captures (long lines, circle back over the from tile)
+        "W:WK28:B7,9,12,18,19,22,23,31,32,33,37,39,40 14 91 697 4242",
+        "B:W11,12,13,21,22,23,31,32,33,41:BK46,K5 8 16 196",
+        "W:WK3,K28,K47:BK5,K29,K41,K46 4 16 198 3398",
+        "B:W6,9,10,11,20,21,22,23,30,K31,33,37,41,42,43,44,46:BK17,K24 14 55 1168 5432 87195",
+        //max capture (king against men)
+        "W:WK47,K50:B8,9,13,14,19,20,22,24,29,30,33,35,38,40 1 10 28 165 1398",
+        "W:W17,18,27,28,32,37,38,K49:B6,12,13,21,22,23,K40 4 5 9 26 93",
+        "W:W28,32,33,38:BK19,K23,24,K41 3 12 40 171 323",
+        //promotion (not when passing the row during a capture)
+        "B:W6,7,15,16,24,25,33,34,42,43:B2,3,12,13,K35 3 16 43 414 3539"
+    };
+
+    final private MoveList[] moves = new MoveList[64];
+
+    Perft() {
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new MoveList();
+        }
+    }
+
+    private long perft(int color, long turn, long opponent, long kings, int ply, int depth) {
+        if (depth == 0) {
+            return 1l;
+        }
+
+        MoveList moves = this.moves[ply];
+
+        getMoves(color, turn, opponent, kings, moves);
+
+        if (depth == 1) {
+            return moves.size;
+        }
+
+        long count = 0l;
+
+        for (int i = 0; i < moves.size; i++) {
+            long move = moves.move[i];
+
+            count += perft(1 - color, opponent ^ getCaptures(move), turn ^ (1l << getFrom(move) ^ 1l << getTo(move)), getKings(color, kings, move), ply + 1, depth - 1);
+        }
+
+        return count;
+    }
+
+    long perft(Position position, int depth) {
+        return perft(position.color, position.turn, position.opponent, position.kings, 0, depth);
+    }
+
+    private static boolean suite() {
+        Perft perft = new Perft();
+        boolean isPassed = true;
+
+        for (String test : SUITE) {
+            String[] counts = test.split(" ");
+            Position position = new Position(counts[0]);
+            String result = "ok   ";
+
+            for (int depth = 1; depth < counts.length; depth++) {
+                long count = perft.perft(position, depth);
+
+                if (count != Long.parseLong(counts[depth])) {
+                    System.out.println("FAIL " + position + " depth " + depth + ": " + count + " (expected " + counts[depth] + ")");
+                    result = "FAIL ";
+                    isPassed = false;
+                }
+            }
+
+            System.out.println(result + position + " depth " + (counts.length - 1));
+        }
+
+        return isPassed;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("suite")) {
+            System.exit(suite() ? 0 : 1);
+        }
+
+        Perft perft = new Perft();
+        Position position = new Position(args.length > 1 ? args[0] : Position.START);
+        int depth = args.length > 0 ? Integer.parseInt(args[args.length - 1]) : 6;
+
+        for (long move : position.getMoves()) {
+            System.out.println(Position.toString(move) + " " + perft.perft(position.play(move), depth - 1));
+        }
+
+        for (int i = 1; i <= depth; i++) {
+            long time = System.nanoTime();
+            long count = perft.perft(position, i);
+
+            time = System.nanoTime() - time;
+
+            System.out.println("depth " + i + ": " + count + " (" + time / 1000000 + " ms, " + (long) (count * 1e9 / Math.max(1l, time)) + " moves/s)");
+        }
+    }
+
+}
@@ -0,0 +1,538 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.BLACK;
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Board.WHITE;
+import static internationaldraughts.Game.EMPTY;
+import static internationaldraughts.Game.WB;
+import static internationaldraughts.TranspositionTable.SIDE;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Position
+ * 
+ * Immutable bitboard position: color (to move), turn (pieces to move), opponent and kings.
+ * Bit i is tile i (0-49), the zobrist key (TranspositionTable) is kept with it.
+ * One legal move generator for the game (Game.turn) and the AI (MinMax), so they agree on what is legal (max capture).
+ * A move is a long: captures (bit 0-49), from (bit 50-55) and to (bit 56-61).
+ * A capture 'move' bitboard (queue) contains all captures and destinations.
+ * Men are generated set-wise (all men per direction by shifts): quiet moves and the men that can capture,
+ * only kings and capturing men are expanded per piece (multi captures).
+ * Static getMoves, getCaptureMoves (captures only), getKings and getKey work on primitives (AI, no allocations), play returns a new Position.
+ * Text (tiles 1-50): FEN "W:W31-50:B1-20" (K = king) and moves "32-28" or "28x19x23" (from x to x captures).
+ * 
+ * class MoveList -> growable list of moves (+ capture queue), reused per ply
+ * enum Diagonal -> move in 4 directions (bitboards, per tile or set-wise), king lines by precomputed rays (per direction per tile)
+ * 
+ * @author Naardeze
+ */
+
+class Position {
+    final static int COLUMN = GRID / 2;
+    final static int ROW = GRID - 1;
+    
+    final static char[] MAN = WB.toCharArray();
+    final static char[] KING = WB.toUpperCase().toCharArray();
+    
+    final static String START = "W:W31-50:B1-20";
+    
+    static class MoveList {
+        long[] move = new long[64];
+        int size = 0;
+        
+        private long[] queue = new long[64];
+        
+        void add(long move) {
+            if (size == this.move.length) {
+                this.move = Arrays.copyOf(this.move, 2 * size);
+            }
+            
+            this.move[size++] = move;
+        }
+    }
+    
+    static enum Diagonal {
+        MIN_X_MIN_Y(COLUMN, 0, -COLUMN) {
+            @Override
+            long getLine(long occupied, long from) {
+                long line = from | RAY[ordinal()][Long.numberOfTrailingZeros(from)];
+                long blockers = line & occupied;
+
+                return blockers == 0l ? line : line & ~RAY[ordinal()][Long.SIZE - 1 - Long.numberOfLeadingZeros(blockers)];
+            }
+        }, 
+        PLUS_X_MIN_Y(COLUMN - 1, 0, -COLUMN + 1) {
+            @Override
+            long getLine(long occupied, long from) {
+                long line = from | RAY[ordinal()][Long.numberOfTrailingZeros(from)];
+                long blockers = line & occupied;
+
+                return blockers == 0l ? line : line & ~RAY[ordinal()][Long.SIZE - 1 - Long.numberOfLeadingZeros(blockers)];
+            }
+        }, 
+        MIN_X_PLUS_Y(COLUMN, ROW, COLUMN) {
+            @Override
+            long getLine(long occupied, long from) {
+                long line = from | RAY[ordinal()][Long.numberOfTrailingZeros(from)];
+                long blockers = line & occupied;
+
+                return blockers == 0l ? line : line & ~RAY[ordinal()][Long.numberOfTrailingZeros(blockers)];
+            }
+        }, 
+        PLUS_X_PLUS_Y(COLUMN - 1, ROW, COLUMN + 1) {
+            @Override
+            long getLine(long occupied, long from) {
+                long line = from | RAY[ordinal()][Long.numberOfTrailingZeros(from)];
+                long blockers = line & occupied;
+
+                return blockers == 0l ? line : line & ~RAY[ordinal()][Long.numberOfTrailingZeros(blockers)];
+            }
+        };
+
+        final int column;
+        final int row;
+        final int step;
+
+        Diagonal(int column, int row, int step) {
+            this.column = column;
+            this.row = row;
+            this.step = step;
+        }
+
+        boolean hasNext(int index) {
+            return index % GRID != column && index / COLUMN != row;
+        }
+
+        long getNext(int index) {
+            return 1l << index + step - index / COLUMN % 2;
+        }
+
+        //set-wise: the next tiles of tiles (tiles without a next tile drop out), even rows step, odd rows step - 1
+        long getNext(long tiles) {
+            return Long.rotateLeft(tiles & NEXT[ordinal()][0], step) | Long.rotateLeft(tiles & NEXT[ordinal()][1], step - 1);
+        }
+
+        //set-wise: the tiles with the next tile in tiles (opposite direction)
+        long getPrevious(long tiles) {
+            return DIAGONALS[DIAGONALS.length - 1 - ordinal()].getNext(tiles);
+        }
+
+        //from (bit, empty) up to the first occupied tile (included) or the side
+        abstract long getLine(long occupied, long from);
+        
+        boolean isForward(int color) {
+            return row == color * ROW;
+        }
+
+        //direction, tile -> tiles behind tile (up to the side)
+        final private static long[][] RAY = new long[4][GRID * GRID / 2];
+
+        //direction, row parity -> tiles with a next tile
+        final private static long[][] NEXT = new long[4][2];
+
+        static {
+            for (Diagonal diagonal : values()) {
+                for (int i = 0; i < GRID * GRID / 2; i++) {
+                    if (diagonal.hasNext(i)) {
+                        NEXT[diagonal.ordinal()][i / COLUMN % 2] ^= 1l << i;
+                    }
+
+                    for (int index = i; diagonal.hasNext(index); index = Long.numberOfTrailingZeros(diagonal.getNext(index))) {
+                        RAY[diagonal.ordinal()][i] ^= diagonal.getNext(index);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long middle = 0l;
+
+    static {
+        for (int i = COLUMN; i < ROW * COLUMN; i++) {
+            if (i % GRID != COLUMN - 1 && i % GRID != COLUMN) {
+                middle ^= 1l << i;
+            }
+        }
+    }
+    
+    final private static Diagonal[] DIAGONALS = Diagonal.values();
+    
+    final static long CAPTURES = (1l << GRID * GRID / 2) - 1;
+    
+    final private static int FROM = GRID * GRID / 2;
+    final private static int TO = FROM + 6;
+    final private static int SQUARE = 0x3f;
+    
+    static int getFrom(long move) {
+        return (int) (move >>> FROM) & SQUARE;
+    }
+    
+    static int getTo(long move) {
+        return (int) (move >>> TO) & SQUARE;
+    }
+    
+    static long getCaptures(long move) {
+        return move & CAPTURES;
+    }
+    
+    static long getMove(int from, long captures, int to) {
+        return captures | (long) from << FROM | (long) to << TO;
+    }
+    
+    //legal moves (max capture) -> moves
+    static void getMoves(int color, long turn, long opponent, long kings, MoveList moves) {
+        getMoves(color, turn, opponent, kings, moves, true);
+    }
+    
+    //legal captures (max capture) -> moves, empty if there is no capture (quiescence)
+    static void getCaptureMoves(int color, long turn, long opponent, long kings, MoveList moves) {
+        getMoves(color, turn, opponent, kings, moves, false);
+    }
+    
+    private static void getMoves(int color, long turn, long opponent, long kings, MoveList moves, boolean isQuiet) {
+        long[] queue = moves.queue;
+        int maxCapture = 0;
+        long empty = ~(turn ^ opponent);
+        long men = turn & ~kings;
+        long capturers = 0l;
+        
+        moves.size = 0;
+        
+        //men with an opponent piece next and an empty tile behind it
+        for (Diagonal diagonal : DIAGONALS) {
+            capturers |= diagonal.getPrevious(opponent & diagonal.getPrevious(empty));
+        }
+    
+        for (long pieces = turn & kings | men & capturers; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            boolean isKing = (kings & Long.lowestOneBit(pieces)) != 0l;
+            
+            for (Diagonal vertical : DIAGONALS) {
+                if (vertical.hasNext(from)) {
+                    long move = vertical.getNext(from);
+
+                    if (isKing && (move & middle & empty) == move) {
+                        move = vertical.getLine(~empty, move);
+                    }
+
+                    long capture = move & opponent;
+
+                    if ((capture & middle) != 0l) {
+                        long step = vertical.getNext(Long.numberOfTrailingZeros(capture));
+
+                        if ((step & empty) == step) {
+                            if (isKing && (step & middle) == step) {
+                                step = vertical.getLine(~empty, step) & empty;
+                            }
+
+                            int size = 0;
+                            
+                            queue[size++] = capture ^ step;
+
+                            empty ^= 1l << from;
+
+                            for (int head = 0; head < size; head++) {
+                                long captureMove = queue[head];
+                                long captures = captureMove & opponent;
+
+                                if (Long.bitCount(captures) >= maxCapture) {
+                                    if (Long.bitCount(captures) > maxCapture) {
+                                        moves.size = 0;
+                                        maxCapture = Long.bitCount(captures);
+                                    }
+
+                                    search : for (long destination = captureMove ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
+                                        long legal = captures | (long) from << FROM | (long) Long.numberOfTrailingZeros(destination) << TO;
+                                        
+                                        for (int i = 0; i < moves.size; i++) {
+                                            if (moves.move[i] == legal) {
+                                                continue search;
+                                            }
+                                        }
+                                        
+                                        moves.add(legal);
+                                    }
+                                }
+
+                                for (long destination = captureMove ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
+                                    int to = Long.numberOfTrailingZeros(destination);
+
+                                    for (Diagonal diagonal : DIAGONALS) {
+                                        if (diagonal.hasNext(to)) {
+                                            step = diagonal.getNext(to);
+
+                                            if (isKing && (step & middle & empty) == step) {
+                                                step = diagonal.getLine(~empty, step);
+                                            }
+
+                                            if ((step & captureMove) == 0l) {
+                                                capture = step & opponent;
+
+                                                if ((capture & middle) != 0l) {
+                                                    step = diagonal.getNext(Long.numberOfTrailingZeros(capture));
+
+                                                    if ((step & empty) == step) {
+                                                        if (isKing && (step & middle) == step) {
+                                                            step = diagonal.getLine(~empty, step) & empty;
+                                                        }
+
+                                                        if (size == queue.length) {
+                                                            queue = moves.queue = Arrays.copyOf(queue, 2 * size);
+                                                        }
+                                                        
+                                                        queue[size++] = captures ^ capture ^ step;
+                                                    }
+                                                }
+                                            }
+                                        }
+                                    }
+                                }
+                            }
+
+                            empty ^= 1l << from;
+                        }
+                    }
+
+                    if (isQuiet && maxCapture == 0 && isKing) {
+                        for (long destination = move & empty; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
+                            moves.add((long) from << FROM | (long) Long.numberOfTrailingZeros(destination) << TO);
+                        }
+                    }
+                }
+            }
+        }
+        
+        //quiet man moves (forward), no capture
+        if (isQuiet && maxCapture == 0) {
+            for (Diagonal diagonal : DIAGONALS) {
+                if (diagonal.isForward(color)) {
+                    for (long destination = diagonal.getNext(men) & empty; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
+                        moves.add((long) Long.numberOfTrailingZeros(diagonal.getPrevious(Long.lowestOneBit(destination))) << FROM | (long) Long.numberOfTrailingZeros(destination) << TO);
+                    }
+                }
+            }
+        }
+    }
+    
+    //kings after move
+    static long getKings(int color, long kings, long move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        
+        kings &= ~getCaptures(move);
+        
+        if ((kings >>> from & 1l) == 1l) {
+            kings ^= 1l << from ^ 1l << to;
+        } else if (to / COLUMN == color * ROW) {
+            kings ^= 1l << to;
+        }
+        
+        return kings;
+    }
+    
+    //key after move (kings before move)
+    static long getKey(int color, long key, long kings, long move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        
+        key ^= SIDE ^ TranspositionTable.getKey(color, (kings >>> from & 1l) == 1l, from) ^ TranspositionTable.getKey(color, (getKings(color, kings, move) >>> to & 1l) == 1l, to);
+        
+        for (long captures = getCaptures(move); captures != 0l; captures ^= Long.lowestOneBit(captures)) {
+            key ^= TranspositionTable.getKey(1 - color, (kings & Long.lowestOneBit(captures)) != 0l, Long.numberOfTrailingZeros(captures));
+        }
+        
+        return key;
+    }
+    
+    final int color;
+    final long turn;
+    final long opponent;
+    final long kings;
+    final long key;
+    
+    private Position(int color, long turn, long opponent, long kings, long key) {
+        this.color = color;
+        this.turn = turn;
+        this.opponent = opponent;
+        this.kings = kings;
+        this.key = key;
+    }
+    
+    Position(String fen) {
+        this(getBoard(fen), WB.toUpperCase().indexOf(fen.trim().charAt(0)));
+    }
+    
+    Position(char[] board, int color) {
+        long[] pieces = new long[WB.length()];
+        long kings = 0l;
+        
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != EMPTY) {
+                pieces[WB.indexOf(Character.toLowerCase(board[i]))] ^= 1l << i;
+                
+                if (Character.isUpperCase(board[i])) {
+                    kings ^= 1l << i;
+                }
+            }
+        }
+        
+        this.color = color;
+        this.turn = pieces[color];
+        this.opponent = pieces[1 - color];
+        this.kings = kings;
+        this.key = TranspositionTable.getKey(board, color);
+    }
+    
+    private static char[] getBoard(String fen) {
+        char[] board = new char[GRID * GRID / 2];
+        
+        Arrays.fill(board, EMPTY);
+        
+        for (String pieces : fen.trim().substring(1).split(":")) {
+            if (pieces.length() > 1) {
+                int color = WB.toUpperCase().indexOf(pieces.charAt(0));
+            
+                for (String piece : pieces.substring(1).split(",")) {
+                    boolean isKing = piece.startsWith("K");
+                    String[] tiles = piece.substring(isKing ? 1 : 0).split("-");
+
+                    for (int tile = Integer.parseInt(tiles[0]); tile <= Integer.parseInt(tiles[tiles.length - 1]); tile++) {
+                        board[tile - 1] = isKing ? KING[color] : MAN[color];
+                    }
+                }
+            }
+        }
+        
+        return board;
+    }
+    
+    char[] getBoard() {
+        char[] board = new char[GRID * GRID / 2];
+        
+        for (int i = 0; i < board.length; i++) {
+            if (((turn ^ opponent) >>> i & 1l) == 0l) {
+                board[i] = EMPTY;
+            } else {
+                int color = (turn >>> i & 1l) == 1l ? this.color : 1 - this.color;
+                
+                board[i] = (kings >>> i & 1l) == 1l ? KING[color] : MAN[color];
+            }
+        }
+        
+        return board;
+    }
+    
+    @Override
+    public String toString() {
+        char[] board = getBoard();
+        String fen = WB.toUpperCase().charAt(color) + "";
+        
+        for (int color : new int[] {WHITE, BLACK}) {
+            fen += ":" + WB.toUpperCase().charAt(color);
+            
+            for (int i = 0, count = 0; i < board.length; i++) {
+                if (board[i] == MAN[color] || board[i] == KING[color]) {
+                    fen += (count++ == 0 ? "" : ",") + (board[i] == KING[color] ? "K" : "") + (i + 1);
+                }
+            }
+        }
+        
+        return fen;
+    }
+    
+    static String toString(long move) {
+        String notation = (getFrom(move) + 1) + (getCaptures(move) == 0l ? "-" : "x") + (getTo(move) + 1);
+        
+        for (long captures = getCaptures(move); captures != 0l; captures ^= Long.lowestOneBit(captures)) {
+            notation += "x" + (Long.numberOfTrailingZeros(captures) + 1);
+        }
+        
+        return notation;
+    }
+    
+    //"from-to", "from x to (x captures)" or "from x landings x to"
+    long getMove(String notation) {
+        String[] tiles = notation.trim().split("[-x]");
+        long captures = 0l;
+        long landings = 0l;
+        
+        for (int i = 2; i < tiles.length; i++) {
+            captures ^= 1l << Integer.parseInt(tiles[i]) - 1;
+        }
+        
+        for (int i = 1; i < tiles.length - 1; i++) {
+            landings ^= 1l << Integer.parseInt(tiles[i]) - 1;
+        }
+        
+        for (long move : getMoves()) {
+            if (getFrom(move) == Integer.parseInt(tiles[0]) - 1) {
+                if (getTo(move) == Integer.parseInt(tiles[1]) - 1 && (captures & ~getCaptures(move)) == 0l) {
+                    return move;
+                } else if (getTo(move) == Integer.parseInt(tiles[tiles.length - 1]) - 1 && (landings & getCaptures(move)) == 0l) {
+                    return move;
+                }
+            }
+        }
+        
+        throw new IllegalArgumentException(notation);
+    }
+    
+    long[] getMoves() {
+        MoveList moves = new MoveList();
+        
+        getMoves(color, turn, opponent, kings, moves);
+        
+        return Arrays.copyOf(moves.move, moves.size);
+    }
+    
+    Position play(long move) {
+        return new Position(1 - color, opponent ^ getCaptures(move), turn ^ (1l << getFrom(move) ^ 1l << getTo(move)), getKings(color, kings, move), getKey(color, key, kings, move));
+    }
+    
+    //from, captures (jump order) and to
+    ArrayList<Integer> getPath(long move) {
+        ArrayList<Integer> path = new ArrayList();
+        
+        path.add(getFrom(move));
+        
+        getPath(path, getFrom(move), getCaptures(move), getTo(move), (kings >>> getFrom(move) & 1l) == 1l, ~(turn ^ opponent) ^ 1l << getFrom(move));
+        
+        path.add(getTo(move));
+        
+        return path;
+    }
+    
+    private static boolean getPath(ArrayList<Integer> path, int index, long captures, int to, boolean isKing, long empty) {
+        if (captures == 0l) {
+            return index == to;
+        }
+        
+        for (Diagonal diagonal : DIAGONALS) {
+            if (diagonal.hasNext(index)) {
+                long step = diagonal.getNext(index);
+                
+                while (isKing && (step & empty) == step && diagonal.hasNext(Long.numberOfTrailingZeros(step))) {
+                    step = diagonal.getNext(Long.numberOfTrailingZeros(step));
+                }
+                
+                if ((step & captures) != 0l && diagonal.hasNext(Long.numberOfTrailingZeros(step))) {
+                    path.add(Long.numberOfTrailingZeros(step));
+                    
+                    for (long landing = diagonal.getNext(Long.numberOfTrailingZeros(step)); (landing & empty) == landing; landing = diagonal.getNext(Long.numberOfTrailingZeros(landing))) {
+                        if (getPath(path, Long.numberOfTrailingZeros(landing), captures ^ step, to, isKing, empty)) {
+                            return true;
+                        } else if (!isKing || !diagonal.hasNext(Long.numberOfTrailingZeros(landing))) {
+                            break;
+                        }
+                    }
+                    
+                    path.remove(path.size() - 1);
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+}
@@ -0,0 +1,184 @@
+package internationaldraughts;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Statistics
+ *
+ * Counters of a search (MinMax): counted per search thread (own fields, no sharing, no atomics), merged (add) per iteration.
+ * Depth (finished), selective depth (max ply), nodes (quiescence nodes), table probes (hits), tablebase hits,
+ * cutoffs (first move cutoffs), time of the search and of the last iteration (ms).
+ * toString -> summary line (Hub, Dxp)
+ *
+ * interface StatisticsMBean -> JMX attributes: last search and totals (since start)
+ * class Bean -> JMX MBean (platform MBean server, internationaldraughts:type=Statistics)
+ *
+ * @author Naardeze
+ */
+
+class Statistics {
+    public static interface StatisticsMBean {
+        int getDepth();
+        int getSelectiveDepth();
+        long getNodes();
+        long getNodesPerSecond();
+        double getTableHitRate();
+        double getFirstMoveCutoffRate();
+        long getTime();
+        int getThreads();
+        int getHash();
+        long getSearches();
+        long getTotalNodes();
+        long getTotalTime();
+    }
+
+    static class Bean implements StatisticsMBean {
+        final static String NAME = "internationaldraughts:type=Statistics";
+
+        private volatile Statistics last = new Statistics();
+        private long searches = 0l;
+        private long nodes = 0l;
+        private long time = 0l;
+
+        private Bean() {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, StatisticsMBean.class), new ObjectName(NAME));
+            } catch (JMException | SecurityException ex) {
+                System.err.println(ex);
+            }
+        }
+
+        Statistics getLast() {
+            return last;
+        }
+
+        synchronized void add(Statistics statistics) {
+            last = statistics;
+            searches++;
+            nodes += statistics.nodes;
+            time += statistics.time;
+        }
+
+        @Override
+        public int getDepth() {
+            return last.depth;
+        }
+
+        @Override
+        public int getSelectiveDepth() {
+            return last.maxPly;
+        }
+
+        @Override
+        public long getNodes() {
+            return last.nodes;
+        }
+
+        @Override
+        public long getNodesPerSecond() {
+            return last.getNodesPerSecond();
+        }
+
+        @Override
+        public double getTableHitRate() {
+            return last.getTableHitRate();
+        }
+
+        @Override
+        public double getFirstMoveCutoffRate() {
+            return last.getFirstMoveCutoffRate();
+        }
+
+        @Override
+        public long getTime() {
+            return last.time;
+        }
+
+        @Override
+        public int getThreads() {
+            return last.threads;
+        }
+
+        @Override
+        public int getHash() {
+            return last.hash;
+        }
+
+        @Override
+        public synchronized long getSearches() {
+            return searches;
+        }
+
+        @Override
+        public synchronized long getTotalNodes() {
+            return nodes;
+        }
+
+        @Override
+        public synchronized long getTotalTime() {
+            return time;
+        }
+    }
+
+    private static Bean bean = null;
+
+    //registered on first use
+    static synchronized Bean getBean() {
+        if (bean == null) {
+            bean = new Bean();
+        }
+
+        return bean;
+    }
+
+    int depth = 0;
+    int maxPly = 0;
+    long nodes = 0l;
+    long quiescenceNodes = 0l;
+    long tableProbes = 0l;
+    long tableHits = 0l;
+    long tablebaseHits = 0l;
+    long cutoffs = 0l;
+    long firstCutoffs = 0l;
+    long time = 0l;
+    long iterationTime = 0l;
+    int threads = 1;
+    int hash = 0;
+
+    //counters of an other thread (same search)
+    void add(Statistics statistics) {
+        maxPly = Math.max(maxPly, statistics.maxPly);
+        nodes += statistics.nodes;
+        quiescenceNodes += statistics.quiescenceNodes;
+        tableProbes += statistics.tableProbes;
+        tableHits += statistics.tableHits;
+        tablebaseHits += statistics.tablebaseHits;
+        cutoffs += statistics.cutoffs;
+        firstCutoffs += statistics.firstCutoffs;
+        threads += statistics.threads;
+    }
+
+    long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1l, time);
+    }
+
+    //percentage
+    double getTableHitRate() {
+        return tableProbes == 0l ? 0.0 : 100.0 * tableHits / tableProbes;
+    }
+
+    //percentage
+    double getFirstMoveCutoffRate() {
+        return cutoffs == 0l ? 0.0 : 100.0 * firstCutoffs / cutoffs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "depth=%d seldepth=%d nodes=%d qnodes=%d nps=%d table=%.1f%% tablebase=%d cutoffs=%d first=%.1f%% time=%.3f iteration=%.3f threads=%d hash=%d", depth, maxPly, nodes, quiescenceNodes, getNodesPerSecond(), getTableHitRate(), tablebaseHits, cutoffs, getFirstMoveCutoffRate(), time / 1000.0, iterationTime / 1000.0, threads, hash);
+    }
+
+}
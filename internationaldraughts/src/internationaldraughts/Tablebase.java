@@ -0,0 +1,593 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.BLACK;
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Board.WHITE;
+import static internationaldraughts.Position.COLUMN;
+import static internationaldraughts.Position.getCaptures;
+import static internationaldraughts.Position.getFrom;
+import static internationaldraughts.Position.getKings;
+import static internationaldraughts.Position.getMoves;
+import static internationaldraughts.Position.getTo;
+import internationaldraughts.Position.MoveList;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Tablebase (main)
+ *
+ * Endgame tables: win, loss (distance in plies) or draw for every position up to n pieces (both sides at least 1).
+ * A position is stored for the side to move as white (black to move -> board rotated, colors swapped).
+ * A slice is the piece count (men and kings to move, men and kings opponent), a position in a slice is indexed
+ * by the ranks of its 4 piece sets (combinations: men 45 tiles (not the promotion row), kings 50 tiles).
+ *
+ * Generation (multi threaded): iterative retrograde analysis, a slice and its color swapped slice are solved together.
+ * Pass 0: no moves -> loss. Every next pass (from the previous pass): a move to a loss -> win, all moves to a win -> loss.
+ * A pass marks the changed positions (1 bit, old values read), then solves the marked ones again and sets them (marked
+ * read as draw, their old value), so no values are held per pass.
+ * Captures and promotions go to smaller (solved) slices. Left unsolved -> draw.
+ * In memory are only the slices being solved and the solved slices a capture or promotion reaches (read back from
+ * their files), the others are dropped. The values of a slice are parts of 2^30 (long index, any slice size).
+ * A value is 1 byte: 0 draw, d win in d plies, -1 - d loss in d plies (MIN_VALUE not a position).
+ * The distances ignore the draw rules (History), the search (MinMax) compares them with the plies the rules leave.
+ *
+ * File per slice (tmtkomok.tb): entries, blocks, block offsets and the blocks (4096 values, deflated).
+ * Probing maps the files (read only, windows of 2^30 bytes) and inflates a block into a per thread cache.
+ *
+ * tablebase [pieces (4)] [directory (tablebase)] [threads] -> generates and writes all slices up to pieces
+ *
+ * class Cache -> inflated blocks per thread
+ * class Values -> values of a slice (generation)
+ *
+ * @author Naardeze
+ */
+
+class Tablebase {
+    final static String DIRECTORY = "tablebase";
+    final static int NONE = Integer.MIN_VALUE;
+
+    final private static int TILES = GRID * GRID / 2;
+    final private static int MEN = TILES - COLUMN;
+    final private static int MAX_PIECES = 9;
+    final private static int SLICES = 10000;
+
+    final private static byte DRAW = 0;
+    final private static byte INVALID = Byte.MIN_VALUE;
+    final private static int MAX_DISTANCE = Byte.MAX_VALUE - 1;
+
+    final private static int BLOCK = 4096;
+    final private static int MAX_BLOCK = 2 * BLOCK + 64;
+    final private static int CACHE = 256;
+    final private static long PART = 1l << 30;
+
+    //C(n, k)
+    final private static long[][] BINOMIAL = new long[TILES + 1][MAX_PIECES + 1];
+
+    static {
+        for (int n = 0; n <= TILES; n++) {
+            BINOMIAL[n][0] = 1l;
+
+            for (int k = 1; k <= Math.min(n, MAX_PIECES); k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k <= n - 1 ? BINOMIAL[n - 1][k] : 0l);
+            }
+        }
+    }
+
+    private static class Cache {
+        final long[] key = new long[CACHE];
+        final byte[][] block = new byte[CACHE][BLOCK];
+        final Inflater inflater = new Inflater();
+        byte[] input = new byte[BLOCK];
+
+        Cache() {
+            Arrays.fill(key, -1l);
+        }
+    }
+
+    final private static ThreadLocal<Cache> CACHES = ThreadLocal.withInitial(Cache::new);
+
+    private static class Values {
+        final long size;
+        final byte[][] part;
+
+        //slice being solved: positions changed in the pass (1 bit each)
+        long[] changed = null;
+
+        Values(long size) {
+            this.size = size;
+
+            part = new byte[(int) ((size + PART - 1) / PART)][];
+
+            for (int i = 0; i < part.length; i++) {
+                part[i] = new byte[(int) Math.min(PART, size - i * PART)];
+            }
+        }
+
+        byte get(long index) {
+            return part[(int) (index / PART)][(int) (index % PART)];
+        }
+
+        void set(long index, byte value) {
+            part[(int) (index / PART)][(int) (index % PART)] = value;
+        }
+
+        boolean isChanged(long index) {
+            return changed != null && (changed[(int) (index >>> 6)] >>> index & 1l) == 1l;
+        }
+
+        void setChanged(long index) {
+            changed[(int) (index >>> 6)] |= 1l << index;
+        }
+    }
+
+    //rotated board (tile i -> 49 - i)
+    static long mirror(long pieces) {
+        return Long.reverse(pieces) >>> Long.SIZE - TILES;
+    }
+
+    //men to move, kings to move, men opponent, kings opponent
+    static int getSlice(int turnMen, int turnKings, int opponentMen, int opponentKings) {
+        return ((turnMen * 10 + turnKings) * 10 + opponentMen) * 10 + opponentKings;
+    }
+
+    private static int getSlice(long turn, long opponent, long kings) {
+        return getSlice(Long.bitCount(turn & ~kings), Long.bitCount(turn & kings), Long.bitCount(opponent & ~kings), Long.bitCount(opponent & kings));
+    }
+
+    //color swapped slice (opponent to move)
+    private static int getOpponent(int slice) {
+        return slice % 100 * 100 + slice / 100;
+    }
+
+    private static long getSize(int slice) {
+        return BINOMIAL[MEN][slice / 1000] * BINOMIAL[TILES][slice / 100 % 10] * BINOMIAL[MEN][slice / 10 % 10] * BINOMIAL[TILES][slice % 10];
+    }
+
+    //combination rank of pieces (tiles from offset)
+    private static long getRank(long pieces, int offset) {
+        long rank = 0l;
+
+        for (int k = 1; pieces != 0l; pieces &= pieces - 1, k++) {
+            rank += BINOMIAL[Long.numberOfTrailingZeros(pieces) - offset][k];
+        }
+
+        return rank;
+    }
+
+    private static long getPieces(long rank, int count, int tiles, int offset) {
+        long pieces = 0l;
+
+        for (int k = count, n = tiles - 1; k > 0; k--, n--) {
+            while (BINOMIAL[n][k] > rank) {
+                n--;
+            }
+
+            rank -= BINOMIAL[n][k];
+            pieces |= 1l << n + offset;
+        }
+
+        return pieces;
+    }
+
+    //white to move (men to move not on row 0, opponent men not on row 9)
+    private static long getIndex(int slice, long turn, long opponent, long kings) {
+        long index = getRank(turn & ~kings, COLUMN);
+
+        index = index * BINOMIAL[TILES][slice / 100 % 10] + getRank(turn & kings, 0);
+        index = index * BINOMIAL[MEN][slice / 10 % 10] + getRank(opponent & ~kings, 0);
+
+        return index * BINOMIAL[TILES][slice % 10] + getRank(opponent & kings, 0);
+    }
+
+    //index -> {turn, opponent, kings} (overlapping pieces -> null)
+    private static long[] getPosition(int slice, long index) {
+        long opponentKings = getPieces(index % BINOMIAL[TILES][slice % 10], slice % 10, TILES, 0);
+        index /= BINOMIAL[TILES][slice % 10];
+
+        long opponentMen = getPieces(index % BINOMIAL[MEN][slice / 10 % 10], slice / 10 % 10, MEN, 0);
+        index /= BINOMIAL[MEN][slice / 10 % 10];
+
+        long turnKings = getPieces(index % BINOMIAL[TILES][slice / 100 % 10], slice / 100 % 10, TILES, 0);
+        index /= BINOMIAL[TILES][slice / 100 % 10];
+
+        long turnMen = getPieces(index, slice / 1000, MEN, COLUMN);
+
+        if (Long.bitCount(turnMen | turnKings | opponentMen | opponentKings) != Long.bitCount(turnMen) + Long.bitCount(turnKings) + Long.bitCount(opponentMen) + Long.bitCount(opponentKings)) {
+            return null;
+        }
+
+        return new long[] {turnMen | turnKings, opponentMen | opponentKings, turnKings | opponentKings};
+    }
+
+    final int pieces;
+
+    final private MappedByteBuffer[][] file = new MappedByteBuffer[SLICES][];
+    final private long[][] offset = new long[SLICES][];
+
+    private Tablebase(File directory) {
+        int pieces = 0;
+        File[] files = directory.listFiles((dir, name) -> name.matches("[0-9]{4}\\.tb"));
+
+        for (File tb : files == null ? new File[0] : files) {
+            int slice = Integer.parseInt(tb.getName().substring(0, 4));
+
+            try (RandomAccessFile in = new RandomAccessFile(tb, "r")) {
+                in.readLong();
+
+                offset[slice] = new long[in.readInt() + 1];
+
+                for (int i = 0; i < offset[slice].length; i++) {
+                    offset[slice][i] = in.readLong();
+                }
+
+                //a block starts in 1 window and ends before the next window ends (overlap)
+                file[slice] = new MappedByteBuffer[(int) ((in.length() + PART - 1) / PART)];
+
+                for (int i = 0; i < file[slice].length; i++) {
+                    file[slice][i] = in.getChannel().map(FileChannel.MapMode.READ_ONLY, i * PART, Math.min(PART + MAX_BLOCK, in.length() - i * PART));
+                }
+
+                pieces = Math.max(pieces, slice / 1000 + slice / 100 % 10 + slice / 10 % 10 + slice % 10);
+            } catch (IOException ex) {
+                System.err.println(tb + ": " + ex);
+            }
+        }
+
+        this.pieces = pieces;
+    }
+
+    //tables in directory (none -> 0 pieces)
+    static Tablebase open(File directory) {
+        return new Tablebase(directory);
+    }
+
+    private byte getValue(int slice, long index) {
+        Cache cache = CACHES.get();
+        long block = index / BLOCK;
+        long key = block * SLICES + slice;
+        int line = (int) (key % CACHE);
+
+        if (cache.key[line] != key) {
+            long start = offset[slice][(int) block];
+            MappedByteBuffer file = this.file[slice][(int) (start / PART)];
+            int position = (int) (start % PART);
+            int length = (int) (offset[slice][(int) block + 1] - start);
+
+            if (cache.input.length < length) {
+                cache.input = new byte[length];
+            }
+
+            for (int i = 0; i < length; i++) {
+                cache.input[i] = file.get(position + i);
+            }
+
+            cache.inflater.reset();
+            cache.inflater.setInput(cache.input, 0, length);
+
+            try {
+                cache.inflater.inflate(cache.block[line]);
+            } catch (DataFormatException ex) {
+                throw new IllegalStateException(ex);
+            }
+
+            cache.key[line] = key;
+        }
+
+        return cache.block[line][(int) (index % BLOCK)];
+    }
+
+    //side to move: d (win in d plies), -1 - d (loss in d plies), 0 (draw) or NONE (no table)
+    int probe(int color, long turn, long opponent, long kings) {
+        if (color == BLACK) {
+            turn = mirror(turn);
+            opponent = mirror(opponent);
+            kings = mirror(kings);
+        }
+
+        if (turn == 0l || opponent == 0l || Long.bitCount(turn | opponent) > pieces) {
+            return NONE;
+        }
+
+        int slice = getSlice(turn, opponent, kings);
+
+        if (slice >= SLICES || file[slice] == null) {
+            return NONE;
+        }
+
+        return getValue(slice, getIndex(slice, turn, opponent, kings));
+    }
+
+    //generation
+
+    private static byte getValue(HashMap<Integer, Values> tables, long turn, long opponent, long kings) {
+        //opponent has no pieces -> loss in 0
+        if (turn == 0l) {
+            return -1;
+        }
+
+        int slice = getSlice(turn, opponent, kings);
+        Values values = tables.get(slice);
+        long index = getIndex(slice, turn, opponent, kings);
+
+        //changed in this pass: a draw before
+        return values.isChanged(index) ? DRAW : values.get(index);
+    }
+
+    //solved slices after a capture (men, kings) and or a promotion (opponent to move)
+    private static ArrayList<Integer> getReached(int slice) {
+        ArrayList<Integer> reached = new ArrayList();
+        int turnMen = slice / 1000;
+        int turnKings = slice / 100 % 10;
+        int opponentMen = slice / 10 % 10;
+        int opponentKings = slice % 10;
+
+        for (int men = 0; men <= opponentMen; men++) {
+            for (int kings = 0; kings <= opponentKings; kings++) {
+                for (int promotion = 0; promotion <= Math.min(1, turnMen); promotion++) {
+                    if ((men + kings > 0 || promotion == 1) && men + kings < opponentMen + opponentKings) {
+                        reached.add(getSlice(opponentMen - men, opponentKings - kings, turnMen - promotion, turnKings + promotion));
+                    }
+                }
+            }
+        }
+
+        return reached;
+    }
+
+    private static byte solve(HashMap<Integer, Values> tables, MoveList moves, long turn, long opponent, long kings) {
+        getMoves(WHITE, turn, opponent, kings, moves);
+
+        int win = Integer.MAX_VALUE;
+        int loss = 0;
+        boolean isLoss = true;
+
+        for (int i = 0; i < moves.size; i++) {
+            long move = moves.move[i];
+            //opponent to move as white
+            byte value = getValue(tables, mirror(opponent ^ getCaptures(move)), mirror(turn ^ (1l << getFrom(move) ^ 1l << getTo(move))), mirror(getKings(WHITE, kings, move)));
+
+            if (value < DRAW) {
+                win = Math.min(win, -value);
+            } else if (value > DRAW) {
+                loss = Math.max(loss, value + 1);
+            } else {
+                isLoss = false;
+            }
+        }
+
+        if (win != Integer.MAX_VALUE) {
+            return (byte) Math.min(MAX_DISTANCE, win);
+        } else if (isLoss) {
+            return (byte) (-1 - Math.min(MAX_DISTANCE, loss));
+        }
+
+        return DRAW;
+    }
+
+    //first index of a part (64 aligned: a thread owns its changed bits)
+    private static long getStart(long size, int part, int threads) {
+        return part == threads ? size : size * part / threads & ~63l;
+    }
+
+    //1 pass over a slice (part per thread): draws -> mark the changed (isSet false), marked -> set (isSet true), wins and losses found
+    private static long pass(HashMap<Integer, Values> tables, int slice, int threads, boolean isSet) throws InterruptedException {
+        Values values = tables.get(slice);
+        long[] found = new long[threads];
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            int part = i;
+
+            workers[i] = new Thread() {
+                @Override
+                public void run() {
+                    MoveList moves = new MoveList();
+
+                    for (long index = getStart(values.size, part, threads); index < getStart(values.size, part + 1, threads); index++) {
+                        if (isSet ? values.isChanged(index) : values.get(index) == DRAW) {
+                            long[] position = getPosition(slice, index);
+                            byte value = position == null ? INVALID : solve(tables, moves, position[0], position[1], position[2]);
+
+                            if (isSet) {
+                                values.set(index, value);
+                            } else if (value != DRAW) {
+                                values.setChanged(index);
+
+                                if (value != INVALID) {
+                                    found[part]++;
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+            workers[i].start();
+        }
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        return Arrays.stream(found).sum();
+    }
+
+    private static void write(File tb, Values values) throws IOException {
+        int blocks = (int) ((values.size + BLOCK - 1) / BLOCK);
+        byte[][] data = new byte[blocks][];
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] buffer = new byte[MAX_BLOCK];
+
+        for (int i = 0; i < blocks; i++) {
+            long start = (long) i * BLOCK;
+
+            deflater.reset();
+            deflater.setInput(values.part[(int) (start / PART)], (int) (start % PART), (int) Math.min(BLOCK, values.size - start));
+            deflater.finish();
+
+            data[i] = Arrays.copyOf(buffer, deflater.deflate(buffer));
+        }
+
+        deflater.end();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tb)))) {
+            long offset = Long.BYTES + Integer.BYTES + (blocks + 1) * (long) Long.BYTES;
+
+            out.writeLong(values.size);
+            out.writeInt(blocks);
+
+            for (byte[] block : data) {
+                out.writeLong(offset);
+                offset += block.length;
+            }
+
+            out.writeLong(offset);
+
+            for (byte[] block : data) {
+                out.write(block);
+            }
+        }
+    }
+
+    //solved slice back from its file
+    private static Values read(File tb) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(tb)))) {
+            Values values = new Values(in.readLong());
+            long[] offset = new long[in.readInt() + 1];
+            Inflater inflater = new Inflater();
+            byte[] input = new byte[MAX_BLOCK];
+
+            for (int i = 0; i < offset.length; i++) {
+                offset[i] = in.readLong();
+            }
+
+            for (int i = 0; i < offset.length - 1; i++) {
+                long start = (long) i * BLOCK;
+                int length = (int) (offset[i + 1] - offset[i]);
+
+                in.readFully(input, 0, length);
+                inflater.reset();
+                inflater.setInput(input, 0, length);
+                inflater.inflate(values.part[(int) (start / PART)], (int) (start % PART), (int) Math.min(BLOCK, values.size - start));
+            }
+
+            inflater.end();
+
+            return values;
+        } catch (DataFormatException ex) {
+            throw new IOException(tb + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static File getFile(File directory, int slice) {
+        return new File(directory, String.format("%04d.tb", slice));
+    }
+
+    //all slices up to pieces: by pieces, then by men (promotion -> less men)
+    static void generate(int pieces, File directory, int threads) throws IOException, InterruptedException {
+        HashMap<Integer, Values> tables = new HashMap();
+
+        directory.mkdirs();
+
+        for (int count = 2; count <= Math.min(MAX_PIECES, pieces); count++) {
+            for (int men = 0; men <= count; men++) {
+                for (int slice = 0; slice < SLICES; slice++) {
+                    int turnMen = slice / 1000;
+                    int turnKings = slice / 100 % 10;
+                    int opponentMen = slice / 10 % 10;
+                    int opponentKings = slice % 10;
+
+                    if (turnMen + turnKings + opponentMen + opponentKings != count || turnMen + opponentMen != men || turnMen + turnKings == 0 || opponentMen + opponentKings == 0 || getOpponent(slice) < slice) {
+                        continue;
+                    }
+
+                    long time = System.currentTimeMillis();
+                    int[] slices = slice == getOpponent(slice) ? new int[] {slice} : new int[] {slice, getOpponent(slice)};
+                    int passes = 0;
+                    HashSet<Integer> reached = new HashSet();
+
+                    for (int solved : slices) {
+                        reached.addAll(getReached(solved));
+                    }
+
+                    //drop the slices no capture or promotion reaches, read the others back
+                    tables.keySet().retainAll(reached);
+
+                    for (int solved : reached) {
+                        if (!tables.containsKey(solved)) {
+                            tables.put(solved, read(getFile(directory, solved)));
+                        }
+                    }
+
+                    for (int solved : slices) {
+                        Values values = new Values(getSize(solved));
+
+                        values.changed = new long[(int) ((values.size + 63) / 64)];
+                        tables.put(solved, values);
+                    }
+
+                    for (boolean isChanged = true; isChanged; passes++) {
+                        isChanged = false;
+
+                        for (int solved : slices) {
+                            isChanged |= pass(tables, solved, threads, false) > 0;
+                        }
+
+                        for (int solved : slices) {
+                            pass(tables, solved, threads, true);
+                        }
+
+                        for (int solved : slices) {
+                            Arrays.fill(tables.get(solved).changed, 0l);
+                        }
+                    }
+
+                    for (int solved : slices) {
+                        tables.get(solved).changed = null;
+                    }
+
+                    for (int solved : slices) {
+                        Values values = tables.get(solved);
+                        long[] results = new long[3];
+
+                        for (byte[] part : values.part) {
+                            for (byte value : part) {
+                                if (value != INVALID) {
+                                    results[value > DRAW ? 0 : value < DRAW ? 1 : 2]++;
+                                }
+                            }
+                        }
+
+                        write(getFile(directory, solved), values);
+
+                        System.out.println(String.format("%04d.tb", solved) + ": " + (results[0] + results[1] + results[2]) + " positions, " + results[0] + " wins, " + results[1] + " losses, " + results[2] + " draws (" + passes + " passes, " + (System.currentTimeMillis() - time) + " ms)");
+                    }
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int pieces = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        File directory = new File(args.length > 1 ? args[1] : DIRECTORY);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        generate(pieces, directory, threads);
+    }
+
+}
@@ -0,0 +1,213 @@
+package internationaldraughts;
+
+import static internationaldraughts.Board.BLACK;
+import static internationaldraughts.Board.GRID;
+import static internationaldraughts.Game.WB;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * TranspositionTable
+ *
+ * Fixed size, open addressed table of primitive longs (no Strings, no boxing, no growing).
+ * A position is keyed by zobrist hashing: a random long per piece per tile (xor) and one for black to move.
+ * An entry is 2 longs: key and data (score, depth, bound, best move (from, to) and generation).
+ * A key is looked up in a bucket of 4 entries, when full the replacement policy decides.
+ * Kept between searches: age starts a new generation, entries of older generations are replaced first (any depth).
+ * Lockless (shared by the search threads): the stored key is key ^ data, a torn entry doesn't match its key.
+ *
+ * enum Bound -> exact, lower or upper (score relative to alfa beta)
+ * enum Replace -> replacement policy (always or depth)
+ *
+ * @author Naardeze
+ */
+
+class TranspositionTable {
+    final static long NONE = 0l;
+
+    static enum Bound {
+        EXACT {
+            @Override
+            boolean isCutoff(int score, int alfa, int beta) {
+                return true;
+            }
+        },
+        LOWER {
+            @Override
+            boolean isCutoff(int score, int alfa, int beta) {
+                return score >= beta;
+            }
+        },
+        UPPER {
+            @Override
+            boolean isCutoff(int score, int alfa, int beta) {
+                return score <= alfa;
+            }
+        };
+
+        abstract boolean isCutoff(int score, int alfa, int beta);
+
+        static Bound getBound(int score, int alfa, int beta) {
+            if (score <= alfa) {
+                return UPPER;
+            } else if (score >= beta) {
+                return LOWER;
+            }
+
+            return EXACT;
+        }
+    }
+
+    static enum Replace {
+        ALWAYS {
+            @Override
+            boolean replaces(int depth, int stored) {
+                return true;
+            }
+        },
+        DEPTH {
+            @Override
+            boolean replaces(int depth, int stored) {
+                return depth >= stored;
+            }
+        };
+
+        abstract boolean replaces(int depth, int stored);
+    }
+
+    final private static Bound[] BOUND = Bound.values();
+
+    final private static long[][][] PIECE = new long[WB.length()][2][GRID * GRID / 2];
+    final static long SIDE;
+
+    static {
+        Random random = new Random(GRID);
+
+        for (long[][] color : PIECE) {
+            for (long[] piece : color) {
+                for (int i = 0; i < piece.length; i++) {
+                    piece[i] = random.nextLong();
+                }
+            }
+        }
+
+        SIDE = random.nextLong();
+    }
+
+    static long getKey(char piece, int index) {
+        return PIECE[WB.indexOf(Character.toLowerCase(piece))][Character.isUpperCase(piece) ? 1 : 0][index];
+    }
+
+    static long getKey(int color, boolean isKing, int index) {
+        return PIECE[color][isKing ? 1 : 0][index];
+    }
+
+    static long getKey(char[] board, int color) {
+        long key = color == BLACK ? SIDE : 0l;
+
+        for (int i = 0; i < board.length; i++) {
+            if (WB.indexOf(Character.toLowerCase(board[i])) != -1) {
+                key ^= getKey(board[i], i);
+            }
+        }
+
+        return key;
+    }
+
+    final private static int BUCKET = 4;
+    final private static int ENTRY = 2 * Long.BYTES;
+
+    final private static int AGE = 0x3f;
+
+    final private long[] table;
+    final private int mask;
+    final private Replace replace;
+
+    private int generation = 0;
+
+    TranspositionTable(int megabytes, Replace replace) {
+        int size = Integer.highestOneBit(Math.max(BUCKET, (int) Math.min(Integer.MAX_VALUE / 2, (long) megabytes * 1024 * 1024 / ENTRY)));
+
+        table = new long[2 * size];
+        mask = size - 1;
+
+        this.replace = replace;
+    }
+
+    private int indexOf(long key) {
+        return ((int) key & mask & -BUCKET) * 2;
+    }
+
+    long get(long key) {
+        for (int i = indexOf(key), j = 0; j < BUCKET; i += 2, j++) {
+            long data = table[i + 1];
+            
+            if ((table[i] ^ data) == key) {
+                return data;
+            }
+        }
+
+        return NONE;
+    }
+
+    void put(long key, int score, int depth, Bound bound, int from, int to) {
+        int index = indexOf(key);
+
+        for (int i = index, j = 0; j < BUCKET; i += 2, j++) {
+            if ((table[i] ^ table[i + 1]) == key || table[i + 1] == NONE) {
+                index = i;
+                break;
+            } else if (getWorth(table[i + 1]) < getWorth(table[index + 1])) {
+                index = i;
+            }
+        }
+
+        long stored = table[index + 1];
+        
+        if (stored == NONE || getAge(stored) != generation || replace.replaces(depth, getDepth(stored))) {
+            long data = (score & 0xffffffffl) | (long) depth << 32 | (long) (bound.ordinal() + 1) << 40 | (long) from << 42 | (long) to << 48 | (long) generation << 54;
+            
+            table[index] = key ^ data;
+            table[index + 1] = data;
+        }
+    }
+
+    //older generation first, then depth
+    private int getWorth(long data) {
+        return getDepth(data) + (getAge(data) == generation ? 0x100 : 0);
+    }
+
+    //new search (entries are kept)
+    void age() {
+        generation = generation + 1 & AGE;
+    }
+
+    void clear() {
+        Arrays.fill(table, NONE);
+    }
+
+    static int getScore(long data) {
+        return (int) data;
+    }
+
+    static int getDepth(long data) {
+        return (int) (data >>> 32) & 0xff;
+    }
+
+    static Bound getBound(long data) {
+        return BOUND[((int) (data >>> 40) & 0x3) - 1];
+    }
+
+    static int getFrom(long data) {
+        return (int) (data >>> 42) & 0x3f;
+    }
+
+    static int getTo(long data) {
+        return (int) (data >>> 48) & 0x3f;
+    }
+
+    static int getAge(long data) {
+        return (int) (data >>> 54) & AGE;
+    }
+
+}